@@ -0,0 +1,76 @@
+package com.deadmandungeons.deadmanplugin.bench;
+
+import com.deadmandungeons.deadmanplugin.Coord;
+import com.deadmandungeons.deadmanplugin.WorldCoord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing and formatting of Coords and WorldCoords in both the verbose and the compact format
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CoordBenchmark {
+
+    private Coord coord;
+    private WorldCoord worldCoord;
+    private String coordStr;
+    private String compactCoordStr;
+    private String worldCoordStr;
+    private String compactWorldCoordStr;
+
+    @Setup
+    public void setup() {
+        coord = new Coord(-491, 23, 285);
+        worldCoord = new WorldCoord(StubWorld.register(Samples.WORLD_NAME), coord);
+        coordStr = coord.toString();
+        compactCoordStr = coord.toCompactString();
+        worldCoordStr = worldCoord.toString();
+        compactWorldCoordStr = worldCoord.toCompactString();
+    }
+
+    @Benchmark
+    public Coord parseCoord() {
+        return Coord.parse(coordStr);
+    }
+
+    @Benchmark
+    public Coord parseCompactCoord() {
+        return Coord.parse(compactCoordStr);
+    }
+
+    @Benchmark
+    public WorldCoord parseWorldCoord() {
+        return WorldCoord.parse(worldCoordStr);
+    }
+
+    @Benchmark
+    public WorldCoord parseCompactWorldCoord() {
+        return WorldCoord.parse(compactWorldCoordStr);
+    }
+
+    @Benchmark
+    public String formatCoord() {
+        return coord.toString();
+    }
+
+    @Benchmark
+    public String formatWorldCoord() {
+        return worldCoord.toString();
+    }
+
+}
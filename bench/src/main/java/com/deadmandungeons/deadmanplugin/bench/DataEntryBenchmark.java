@@ -0,0 +1,61 @@
+package com.deadmandungeons.deadmanplugin.bench;
+
+import com.deadmandungeons.deadmanplugin.filedata.DataEntry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing, formatting, and cloning of whole DataEntries
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataEntryBenchmark {
+
+    @Param({"SIGN", "LOCATION", "TIMER", "PLAYER", "FULL"})
+    private Samples sample;
+
+    private String entryStr;
+    private DataEntry entry;
+
+    @Setup
+    public void setup() {
+        entryStr = sample.getEntryStr();
+        entry = new DataEntry(entryStr);
+    }
+
+    @Benchmark
+    public DataEntry parse() {
+        return new DataEntry(entryStr);
+    }
+
+    @Benchmark
+    public String format() {
+        return entry.toString();
+    }
+
+    @Benchmark
+    public String parseAndFormat() {
+        return new DataEntry(entryStr).toString();
+    }
+
+    @Benchmark
+    public DataEntry cloneEntry() {
+        return entry.clone();
+    }
+
+}
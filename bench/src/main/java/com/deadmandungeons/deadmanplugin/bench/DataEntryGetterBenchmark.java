@@ -0,0 +1,93 @@
+package com.deadmandungeons.deadmanplugin.bench;
+
+import com.deadmandungeons.deadmanplugin.PlayerId;
+import com.deadmandungeons.deadmanplugin.WorldCoord;
+import com.deadmandungeons.deadmanplugin.filedata.DataEntry;
+import com.deadmandungeons.deadmanplugin.timer.Timer;
+import org.bukkit.Location;
+import org.bukkit.material.MaterialData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The typed getters of a DataEntry. The getters of an already parsed entry measure a memoized get,
+ * and the getters of a freshly parsed entry measure parsing and decoding the values together.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataEntryGetterBenchmark {
+
+    private String entryStr;
+    private DataEntry entry;
+
+    @Setup
+    public void setup() {
+        entryStr = Samples.FULL.getEntryStr();
+        entry = new DataEntry(entryStr);
+    }
+
+    @Benchmark
+    public int getInt() {
+        return entry.getInt(DataEntry.ID_KEY);
+    }
+
+    @Benchmark
+    public double getDouble() {
+        return entry.getDouble(DataEntry.X_KEY);
+    }
+
+    @Benchmark
+    public WorldCoord getWorldCoord() {
+        return entry.getWorldCoord();
+    }
+
+    @Benchmark
+    public Location getLocation() {
+        return entry.getLocation();
+    }
+
+    @Benchmark
+    public MaterialData getMaterialData() {
+        return entry.getMaterialData();
+    }
+
+    @Benchmark
+    public Timer getTimer() {
+        return entry.getTimer();
+    }
+
+    @Benchmark
+    public PlayerId getPlayerId() {
+        return entry.getPlayerId();
+    }
+
+    @Benchmark
+    public Location parseAndGetLocation() {
+        return new DataEntry(entryStr).getLocation();
+    }
+
+    @Benchmark
+    public Timer parseAndGetTimer() {
+        return new DataEntry(entryStr).getTimer();
+    }
+
+    @Benchmark
+    public PlayerId parseAndGetPlayerId() {
+        return new DataEntry(entryStr).getPlayerId();
+    }
+
+}
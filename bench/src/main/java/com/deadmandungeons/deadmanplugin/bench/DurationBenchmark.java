@@ -0,0 +1,53 @@
+package com.deadmandungeons.deadmanplugin.bench;
+
+import com.deadmandungeons.deadmanplugin.DeadmanUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link DeadmanUtils#parseDuration(String)} and {@link DeadmanUtils#formatDuration(long)}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DurationBenchmark {
+
+    @State(Scope.Thread)
+    public static class ParseState {
+
+        @Param({"45m", "5d:45m:20s", "11d:12h:30m"})
+        private String durationStr;
+
+    }
+
+    @State(Scope.Thread)
+    public static class FormatState {
+
+        @Param({"478200", "3785300", "97440000"})
+        private long millis;
+
+    }
+
+    @Benchmark
+    public long parseDuration(ParseState state) {
+        return DeadmanUtils.parseDuration(state.durationStr);
+    }
+
+    @Benchmark
+    public String formatDuration(FormatState state) {
+        return DeadmanUtils.formatDuration(state.millis);
+    }
+
+}
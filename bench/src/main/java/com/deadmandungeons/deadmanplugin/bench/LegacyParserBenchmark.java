@@ -0,0 +1,46 @@
+package com.deadmandungeons.deadmanplugin.bench;
+
+import com.deadmandungeons.deadmanplugin.filedata.DataEntry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The same as {@link DataEntryBenchmark#parse()} but with the regex parser that the tokenizer replaced,
+ * so that the two can be compared. The parser is chosen by a system property when DataEntry is initialized,
+ * so this benchmark runs in its own fork.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Ddeadmanplugin.dataentry.legacyParser=true")
+public class LegacyParserBenchmark {
+
+    @Param({"SIGN", "LOCATION", "TIMER", "PLAYER", "FULL"})
+    private Samples sample;
+
+    private String entryStr;
+
+    @Setup
+    public void setup() {
+        entryStr = sample.getEntryStr();
+    }
+
+    @Benchmark
+    public DataEntry parse() {
+        return new DataEntry(entryStr);
+    }
+
+}
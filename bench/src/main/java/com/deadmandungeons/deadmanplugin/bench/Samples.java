@@ -0,0 +1,31 @@
+package com.deadmandungeons.deadmanplugin.bench;
+
+/**
+ * The sample DataEntry Strings used by the benchmarks, named so they can be selected with a JMH parameter
+ */
+public enum Samples {
+
+    SIGN("WORLD:Cynelia, X:-491, Y:23, Z:285, ID:68, DATA:4, DURATION:101m, PRICE:30000"),
+    LOCATION("WORLD:Cynelia, X:-491.5, Y:23.0, Z:285.25, YAW:90.0, PITCH:-12.5"),
+    TIMER("DURATION:6060000, EXPIRE:1476660000000"),
+    PLAYER("UUID:069a79f4-44e9-4726-a5be-fca90e38aaf5, NAME:notch"),
+    FULL("WORLD:Cynelia, X:-491.5, Y:23.0, Z:285.25, YAW:90.0, PITCH:-12.5, ID:68, DATA:4, DURATION:6060000, "
+            + "ELAPSED:120000, UUID:069a79f4-44e9-4726-a5be-fca90e38aaf5, NAME:notch, PRICE:30000");
+
+    public static final String WORLD_NAME = "Cynelia";
+
+    static {
+        StubWorld.register(WORLD_NAME);
+    }
+
+    private final String entryStr;
+
+    Samples(String entryStr) {
+        this.entryStr = entryStr;
+    }
+
+    public String getEntryStr() {
+        return entryStr;
+    }
+
+}
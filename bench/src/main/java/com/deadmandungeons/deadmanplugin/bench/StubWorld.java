@@ -0,0 +1,62 @@
+package com.deadmandungeons.deadmanplugin.bench;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+
+import java.nio.charset.Charset;
+import java.util.UUID;
+
+/**
+ * A World that only has a name, registered with the stub {@link Bukkit} so that World values can be resolved
+ */
+public final class StubWorld implements World {
+
+    private final String name;
+    private final UUID uid;
+
+    private StubWorld(String name) {
+        this.name = name;
+        uid = UUID.nameUUIDFromBytes(name.getBytes(Charset.forName("UTF-8")));
+    }
+
+    /**
+     * @param name - The name of the World
+     * @return the registered World with the given name
+     */
+    public static World register(String name) {
+        World world = Bukkit.getWorld(name);
+        if (world == null) {
+            world = new StubWorld(name);
+            Bukkit.addWorld(world);
+        }
+        return world;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public UUID getUID() {
+        return uid;
+    }
+
+    @Override
+    public int getMaxHeight() {
+        return 256;
+    }
+
+    @Override
+    public Chunk getChunkAt(int x, int z) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Block getBlockAt(int x, int y, int z) {
+        throw new UnsupportedOperationException();
+    }
+
+}
@@ -0,0 +1,53 @@
+package org.bukkit;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A lightweight stand-in for the Bukkit server singleton so the benchmarks can run without a server.
+ * Worlds are only known after they have been registered with {@link #addWorld(World)}.
+ */
+public final class Bukkit {
+
+    private static final Map<String, World> worldsByName = new ConcurrentHashMap<String, World>();
+    private static final Map<UUID, World> worldsById = new ConcurrentHashMap<UUID, World>();
+
+    private Bukkit() {
+    }
+
+    /**
+     * Not part of the Bukkit API. Register a World to be returned by {@link #getWorld(String)} and {@link #getWorld(UUID)}
+     */
+    public static void addWorld(World world) {
+        worldsByName.put(world.getName(), world);
+        worldsById.put(world.getUID(), world);
+    }
+
+    public static World getWorld(String name) {
+        return worldsByName.get(name);
+    }
+
+    public static World getWorld(UUID uid) {
+        return worldsById.get(uid);
+    }
+
+    /**
+     * @return an OfflinePlayer that has never played, so its name is unknown
+     */
+    public static OfflinePlayer getOfflinePlayer(final UUID id) {
+        return new OfflinePlayer() {
+
+            @Override
+            public UUID getUniqueId() {
+                return id;
+            }
+
+            @Override
+            public String getName() {
+                return null;
+            }
+        };
+    }
+
+}
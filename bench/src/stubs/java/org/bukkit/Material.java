@@ -0,0 +1,41 @@
+package org.bukkit;
+
+/**
+ * Only a few of the materials, with their legacy ids
+ */
+public enum Material {
+
+    AIR(0),
+    STONE(1),
+    GRASS(2),
+    DIRT(3),
+    COBBLESTONE(4),
+    WOOD(5),
+    WOOL(35),
+    SIGN_POST(63),
+    WALL_SIGN(68);
+
+    private final int id;
+
+    Material(int id) {
+        this.id = id;
+    }
+
+    @Deprecated
+    public int getId() {
+        return id;
+    }
+
+    public static Material getMaterial(String name) {
+        try {
+            return valueOf(name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    public static Material matchMaterial(String name) {
+        return getMaterial(name.toUpperCase(java.util.Locale.ENGLISH).replaceAll("\\s+", "_").replaceAll("\\W", ""));
+    }
+
+}
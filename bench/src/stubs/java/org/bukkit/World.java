@@ -0,0 +1,19 @@
+package org.bukkit;
+
+import org.bukkit.block.Block;
+
+import java.util.UUID;
+
+public interface World {
+
+    String getName();
+
+    UUID getUID();
+
+    int getMaxHeight();
+
+    Chunk getChunkAt(int x, int z);
+
+    Block getBlockAt(int x, int y, int z);
+
+}
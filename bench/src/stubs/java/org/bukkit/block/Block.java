@@ -0,0 +1,26 @@
+package org.bukkit.block;
+
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+
+public interface Block {
+
+    World getWorld();
+
+    Chunk getChunk();
+
+    int getX();
+
+    int getY();
+
+    int getZ();
+
+    Location getLocation();
+
+    Material getType();
+
+    BlockState getState();
+
+}
@@ -0,0 +1,15 @@
+package org.bukkit.block;
+
+import org.bukkit.material.MaterialData;
+
+public interface BlockState {
+
+    Block getBlock();
+
+    MaterialData getData();
+
+    void setData(MaterialData data);
+
+    boolean update(boolean force);
+
+}
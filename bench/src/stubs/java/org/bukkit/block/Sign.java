@@ -0,0 +1,11 @@
+package org.bukkit.block;
+
+public interface Sign extends BlockState {
+
+    String[] getLines();
+
+    String getLine(int index);
+
+    void setLine(int index, String line);
+
+}
@@ -0,0 +1,14 @@
+package org.bukkit.entity;
+
+import org.bukkit.Location;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.inventory.PlayerInventory;
+import org.bukkit.metadata.Metadatable;
+
+public interface Player extends OfflinePlayer, Metadatable {
+
+    Location getLocation();
+
+    PlayerInventory getInventory();
+
+}
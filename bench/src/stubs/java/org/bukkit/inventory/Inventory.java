@@ -0,0 +1,7 @@
+package org.bukkit.inventory;
+
+public interface Inventory {
+
+    ItemStack[] getStorageContents();
+
+}
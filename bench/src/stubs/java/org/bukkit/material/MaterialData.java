@@ -0,0 +1,40 @@
+package org.bukkit.material;
+
+import org.bukkit.Material;
+
+public class MaterialData implements Cloneable {
+
+    private final Material type;
+    private byte data;
+
+    public MaterialData(Material type) {
+        this(type, (byte) 0);
+    }
+
+    public MaterialData(Material type, byte data) {
+        this.type = type;
+        this.data = data;
+    }
+
+    public Material getItemType() {
+        return type;
+    }
+
+    public byte getData() {
+        return data;
+    }
+
+    public void setData(byte data) {
+        this.data = data;
+    }
+
+    @Override
+    public MaterialData clone() {
+        try {
+            return (MaterialData) super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new Error(e);
+        }
+    }
+
+}
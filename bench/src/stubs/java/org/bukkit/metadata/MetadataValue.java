@@ -0,0 +1,11 @@
+package org.bukkit.metadata;
+
+import org.bukkit.plugin.Plugin;
+
+public interface MetadataValue {
+
+    Object value();
+
+    Plugin getOwningPlugin();
+
+}
@@ -0,0 +1,15 @@
+package org.bukkit.metadata;
+
+import org.bukkit.plugin.Plugin;
+
+import java.util.List;
+
+public interface Metadatable {
+
+    List<MetadataValue> getMetadata(String key);
+
+    boolean hasMetadata(String key);
+
+    void removeMetadata(String key, Plugin owningPlugin);
+
+}
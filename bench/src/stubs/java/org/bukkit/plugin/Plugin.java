@@ -0,0 +1,7 @@
+package org.bukkit.plugin;
+
+public interface Plugin {
+
+    String getName();
+
+}
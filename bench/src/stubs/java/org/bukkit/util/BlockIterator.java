@@ -0,0 +1,29 @@
+package org.bukkit.util;
+
+import org.bukkit.block.Block;
+import org.bukkit.entity.Player;
+
+import java.util.Iterator;
+
+public class BlockIterator implements Iterator<Block> {
+
+    public BlockIterator(Player player, int maxDistance) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return false;
+    }
+
+    @Override
+    public Block next() {
+        return null;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+}
@@ -1,7 +1,6 @@
 package com.deadmandungeons.deadmanplugin;
 
 import org.apache.commons.lang.Validate;
-import org.apache.commons.lang.math.NumberUtils;
 import org.bukkit.ChatColor;
 import org.bukkit.Material;
 import org.bukkit.inventory.ItemStack;
@@ -82,7 +81,7 @@ public class Conversion {
     /**
      * This will cast value as Number if it's an instanceof Number. Otherwise,
      * if value is not null, the result of <code>value.toString()</code> will
-     * be parsed using {@link NumberUtils#createNumber(String)}
+     * be parsed using {@link NumberParser#parseNumber(CharSequence)}
      * @param value - The input value to be converted
      * @return value as a Number, or null if value is not a Number
      */
@@ -186,8 +185,8 @@ public class Conversion {
         public Number convert(Object value) {
             if (value instanceof Number) {
                 return (Number) value;
-            } else if (value != null && NumberUtils.isNumber(value.toString())) {
-                return NumberUtils.createNumber(value.toString());
+            } else if (value != null) {
+                return NumberParser.parseNumber(value.toString());
             }
             return null;
         }
@@ -1,6 +1,8 @@
 package com.deadmandungeons.deadmanplugin;
 
+import com.deadmandungeons.deadmanplugin.filedata.DataEntryLoader;
 import com.deadmandungeons.deadmanplugin.filedata.DeadmanConfig;
+import com.deadmandungeons.deadmanplugin.filedata.PluginFile;
 import org.apache.commons.lang.Validate;
 import org.bukkit.Bukkit;
 import org.bukkit.metadata.Metadatable;
@@ -89,6 +91,8 @@ public abstract class DeadmanPlugin extends JavaPlugin {
     @Override
     public final void onDisable() {
         onPluginDisable();
+        PluginFile.shutdown(this);
+        DataEntryLoader.shutdown();
 
         // Free up memory
         plugins.remove(getClass());
@@ -0,0 +1,253 @@
+package com.deadmandungeons.deadmanplugin;
+
+import org.apache.commons.lang.math.NumberUtils;
+
+import java.math.BigInteger;
+
+/**
+ * A number parser that validates and converts a String in a single pass without throwing an exception for an invalid number.<br>
+ * Plain decimal numbers in the format <code>-123.45e6</code> are parsed directly, and the parsed value is available as a
+ * primitive long and double so that no boxing is needed. Any other format accepted by {@link NumberUtils#isNumber(String)}
+ * such as hexadecimal numbers or numbers with a type qualifier is delegated to {@link NumberUtils#createNumber(String)}.<br>
+ * A NumberParser instance is reusable but not thread safe. The static methods can be used for one-off conversions.
+ * @author Jon
+ */
+public final class NumberParser {
+
+    // Every power of ten that is exactly representable as a double
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15,
+            1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    // The largest integer that every smaller integer is exactly representable as a double
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final long MAX_MANTISSA_DIV_10 = Long.MAX_VALUE / 10;
+
+    private boolean decimal;
+    private long longValue;
+    private double doubleValue;
+    private Number number;
+
+    /**
+     * @param str - The String to parse
+     * @return true if the given String is a valid number, in which case the parsed value is available from this parser
+     * until the next invocation of this method. If false is returned, the state of this parser is undefined.
+     */
+    public boolean parse(CharSequence str) {
+        number = null;
+        int length = str.length();
+        int i = 0;
+        boolean negative = length > 0 && str.charAt(0) == '-';
+        if (negative) {
+            i++;
+        }
+
+        long mantissa = 0;
+        int exponent = 0;
+        boolean digits = false;
+        boolean truncated = false;
+        for (; i < length; i++) {
+            char c = str.charAt(i);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            digits = true;
+            if (!truncated && fits(mantissa, c)) {
+                mantissa = mantissa * 10 + (c - '0');
+            } else {
+                truncated = true;
+                exponent++;
+            }
+        }
+        boolean integral = true;
+        if (i < length && str.charAt(i) == '.') {
+            integral = false;
+            for (i++; i < length; i++) {
+                char c = str.charAt(i);
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                digits = true;
+                if (!truncated && fits(mantissa, c)) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    exponent--;
+                } else {
+                    truncated = true;
+                }
+            }
+        }
+        if (!digits) {
+            return parseOther(str);
+        }
+        if (i < length && (str.charAt(i) == 'e' || str.charAt(i) == 'E')) {
+            integral = false;
+            i++;
+            boolean negativeExponent = i < length && str.charAt(i) == '-';
+            if (negativeExponent || (i < length && str.charAt(i) == '+')) {
+                i++;
+            }
+            int exponentStart = i;
+            int explicitExponent = 0;
+            for (; i < length; i++) {
+                char c = str.charAt(i);
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                if (explicitExponent < 100000) {
+                    explicitExponent = explicitExponent * 10 + (c - '0');
+                }
+            }
+            if (i == exponentStart) {
+                return parseOther(str);
+            }
+            exponent += (negativeExponent ? -explicitExponent : explicitExponent);
+        }
+        if (i != length) {
+            return parseOther(str);
+        }
+
+        if (integral) {
+            if (truncated) {
+                // too large for a long
+                BigInteger bigInteger = new BigInteger(str.toString());
+                // Long.MIN_VALUE is the only long that does not fit in the unsigned mantissa
+                number = (bigInteger.bitLength() < Long.SIZE ? null : bigInteger);
+                decimal = false;
+                longValue = bigInteger.longValue();
+                doubleValue = bigInteger.doubleValue();
+                return true;
+            }
+            decimal = false;
+            longValue = (negative ? -mantissa : mantissa);
+            doubleValue = longValue;
+            return true;
+        }
+
+        double value;
+        if (!truncated && mantissa <= MAX_EXACT_MANTISSA && exponent >= -22 && exponent <= 22) {
+            // both the mantissa and the power of ten are exact, so a single multiplication or division is correctly rounded
+            value = (exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent]);
+            if (negative) {
+                value = -value;
+            }
+        } else {
+            // the String has already been validated, so this cannot throw
+            value = Double.parseDouble(str.toString());
+        }
+        decimal = true;
+        doubleValue = value;
+        longValue = (long) value;
+        return true;
+    }
+
+    private static boolean fits(long mantissa, char digit) {
+        return mantissa < MAX_MANTISSA_DIV_10 || (mantissa == MAX_MANTISSA_DIV_10 && digit <= '7');
+    }
+
+    private boolean parseOther(CharSequence str) {
+        String value = str.toString();
+        if (NumberUtils.isNumber(value)) {
+            try {
+                Number number = NumberUtils.createNumber(value);
+                if (number != null) {
+                    this.number = number;
+                    decimal = !(number instanceof Integer || number instanceof Long || number instanceof BigInteger);
+                    longValue = number.longValue();
+                    doubleValue = number.doubleValue();
+                    return true;
+                }
+            } catch (NumberFormatException e) {
+                // isNumber accepts a few Strings that createNumber does not
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the last parsed number had a fractional part or an exponent
+     */
+    public boolean isDecimal() {
+        return decimal;
+    }
+
+    /**
+     * @return the last parsed number as a long. A decimal number is truncated
+     */
+    public long longValue() {
+        return longValue;
+    }
+
+    /**
+     * @return the last parsed number as a double
+     */
+    public double doubleValue() {
+        return doubleValue;
+    }
+
+    /**
+     * @return the last parsed number as an Integer or Long if it was integral, or a Double if it was decimal.
+     * A number that was delegated to NumberUtils is returned as the type that NumberUtils created
+     */
+    public Number toNumber() {
+        if (number != null) {
+            return number;
+        } else if (decimal) {
+            return doubleValue;
+        } else if (longValue >= Integer.MIN_VALUE && longValue <= Integer.MAX_VALUE) {
+            return (int) longValue;
+        }
+        return longValue;
+    }
+
+    /**
+     * @return true if the last parsed number can be represented exactly by {@link #longValue()} or {@link #doubleValue()}
+     */
+    public boolean isPrimitive() {
+        return number == null || number instanceof Integer || number instanceof Long || number instanceof Double
+                || number instanceof Float;
+    }
+
+
+    /**
+     * @param str - The String to parse
+     * @return the parsed Number as specified by {@link #toNumber()}, or null if str is null or is not a valid number
+     */
+    public static Number parseNumber(CharSequence str) {
+        if (str != null) {
+            NumberParser parser = new NumberParser();
+            if (parser.parse(str)) {
+                return parser.toNumber();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param str - The String to parse
+     * @param def - The default value to return if str is not a valid number
+     * @return the parsed number as a long, or def if str is null or is not a valid number. A decimal number is truncated
+     */
+    public static long parseLong(CharSequence str, long def) {
+        if (str != null) {
+            NumberParser parser = new NumberParser();
+            if (parser.parse(str)) {
+                return parser.longValue;
+            }
+        }
+        return def;
+    }
+
+    /**
+     * @param str - The String to parse
+     * @param def - The default value to return if str is not a valid number
+     * @return the parsed number as a double, or def if str is null or is not a valid number
+     */
+    public static double parseDouble(CharSequence str, double def) {
+        if (str != null) {
+            NumberParser parser = new NumberParser();
+            if (parser.parse(str)) {
+                return parser.doubleValue;
+            }
+        }
+        return def;
+    }
+
+}
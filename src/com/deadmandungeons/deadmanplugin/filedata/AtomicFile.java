@@ -0,0 +1,184 @@
+package com.deadmandungeons.deadmanplugin.filedata;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Crash-safe file writes. The data is written to a temporary file next to the target file, which is flushed to the
+ * storage device and then atomically renamed over the target file. A crash or a full disk in the middle of a write
+ * therefore leaves either the complete previous file or the complete new file, but never a partially written file.
+ * @author Jon
+ */
+final class AtomicFile {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private AtomicFile() {
+    }
+
+    /**
+     * @param file - The file to write
+     * @return the temporary file that the given file is written to before it is renamed
+     */
+    static File getTempFile(File file) {
+        return new File(file.getParentFile(), file.getName() + ".tmp");
+    }
+
+    /**
+     * @param file - The file to write
+     * @return the file that the previous version of the given file is kept as if a backup is requested
+     */
+    static File getBackupFile(File file) {
+        return new File(file.getParentFile(), file.getName() + ".bak");
+    }
+
+    /**
+     * Atomically replace the contents of the given file with the given data encoded as UTF-8. This is not necessarily the
+     * platform charset that YamlConfiguration#load(File) decodes a file with, so a written file must be read back as UTF-8.
+     * @param file - The file to write
+     * @param data - The data to write
+     * @param backup - true if the previous version of the file should be kept as specified by {@link #getBackupFile(File)}
+     * @throws IOException if the data could not be written. The given file is not modified in that case
+     */
+    static void write(File file, CharSequence data, boolean backup) throws IOException {
+        writeTemp(file, data);
+        commit(file, backup);
+    }
+
+    /**
+     * Atomically replace the contents of the given file with the given bytes
+     * @param file - The file to write
+     * @param data - The bytes to write
+     * @param backup - true if the previous version of the file should be kept as specified by {@link #getBackupFile(File)}
+     * @throws IOException if the data could not be written. The given file is not modified in that case
+     */
+    static void write(File file, byte[] data, boolean backup) throws IOException {
+        Path temp = prepareTemp(file);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer bytes = ByteBuffer.wrap(data);
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            channel.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        commit(file, backup);
+    }
+
+    /**
+     * Write the given data encoded as UTF-8 to the temporary file of the given file and flush it to the storage device.
+     * The given file is not modified until {@link #commit(File, boolean)} is called.
+     * @param file - The file to write
+     * @param data - The data to write
+     * @return the CRC-32 checksum of the written bytes
+     * @throws IOException if the data could not be written, in which case the temporary file is deleted
+     */
+    static long writeTemp(File file, CharSequence data) throws IOException {
+        Path temp = prepareTemp(file);
+        CRC32 crc = new CRC32();
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            // encode in chunks straight into the channel rather than encoding the whole String to a byte array first
+            CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+            CharBuffer chars = CharBuffer.wrap(data);
+            ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+            CoderResult result;
+            do {
+                result = encoder.encode(chars, bytes, true);
+                if (result.isError()) {
+                    result.throwException();
+                }
+                writeFully(channel, bytes, crc);
+            } while (result.isOverflow());
+            while (encoder.flush(bytes).isOverflow()) {
+                writeFully(channel, bytes, crc);
+            }
+            writeFully(channel, bytes, crc);
+            channel.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Atomically rename the temporary file written by {@link #writeTemp(File, CharSequence)} to the given file
+     * @param file - The file to replace
+     * @param backup - true if the previous version of the file should be kept as specified by {@link #getBackupFile(File)}
+     * @throws IOException if the temporary file could not be renamed
+     */
+    static void commit(File file, boolean backup) throws IOException {
+        Path target = file.toPath();
+        Path temp = getTempFile(file).toPath();
+
+        if (backup && Files.exists(target)) {
+            Path backupPath = getBackupFile(file).toPath();
+            Files.deleteIfExists(backupPath);
+            try {
+                // a hard link keeps the previous version without copying it
+                Files.createLink(backupPath, target);
+            } catch (IOException | UnsupportedOperationException e) {
+                Files.copy(target, backupPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        syncDirectory(file.getAbsoluteFile().getParentFile());
+    }
+
+    private static Path prepareTemp(File file) {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        return getTempFile(file).toPath();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer bytes, CRC32 crc) throws IOException {
+        // called through Buffer, because a newer JDK links flip() and clear() to ByteBuffer methods that Java 8 does not have
+        ((Buffer) bytes).flip();
+        crc.update(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        ((Buffer) bytes).clear();
+    }
+
+    /**
+     * Persist the renames of the files in the given directory
+     * @param directory - The directory to sync
+     */
+    static void syncDirectory(File directory) {
+        if (directory == null) {
+            return;
+        }
+        // persist the rename itself. This is not supported on every platform, in which case the rename is still atomic
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+}
@@ -0,0 +1,351 @@
+package com.deadmandungeons.deadmanplugin.filedata;
+
+import com.deadmandungeons.deadmanplugin.filedata.DataEntry.DataKey;
+import org.apache.commons.lang.Validate;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StreamCorruptedException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact binary representation of a list of {@link DataEntry}s, and a converter to and from the text format
+ * specified by {@link DataEntry#toString()}.<br>
+ * The data starts with a dictionary of every key name used by the entries, so that each value only refers to the
+ * index of its key in the dictionary. This is needed because DataKey ordinals are assigned at runtime and are not
+ * stable between runs. Each value is written as a key index and a type tag followed by the payload: a zigzag varint for
+ * integral numbers, the IEEE 754 bits for float and double numbers, and a varint length followed by UTF-8 bytes
+ * for any other value. A value String that was already written is written as a varint reference to its first occurrence,
+ * so repeated values such as world names are only stored once. Number values are read straight into the primitive value slots of an entry without any String parsing.
+ * <pre>
+ * data:   'D' 'M' 'D' 'E' version:u8 keyCount:varint (nameLength:varint name:utf8)* entryCount:varint entry*
+ * entry:  pairCount:varint (keyIndex:varint tag:u8 payload)*
+ * </pre>
+ * @author Jon
+ */
+public final class BinaryEntryFormat {
+
+    private static final int MAGIC = ('D' << 24) | ('M' << 16) | ('D' << 8) | 'E';
+    private static final int VERSION = 1;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // Every tag other than STRING and STRING_REF is the same as the DataSlots type tag
+    private static final byte STRING = DataSlots.OBJECT;
+    private static final byte STRING_REF = 8;
+
+    // The limits that the counts and lengths read from the data are checked against, so that corrupted data cannot make
+    // read allocate an arbitrary amount of memory
+    static final int MAX_KEYS = 1 << 16;
+    static final int MAX_STRING_LENGTH = 1 << 20;
+
+    private BinaryEntryFormat() {
+    }
+
+    /**
+     * Write the given entries to the given OutputStream in the binary format.
+     * The given stream is neither buffered nor closed by this method.
+     * @param entries - The DataEntries to write
+     * @param out - The OutputStream to write to
+     * @throws IOException if the given OutputStream throws an IOException
+     * @throws IllegalArgumentException if a key name or value is longer than {@link #MAX_STRING_LENGTH} bytes when encoded as UTF-8
+     */
+    public static void write(Collection<? extends DataEntry> entries, OutputStream out) throws IOException {
+        Validate.notNull(entries, "entries cannot be null");
+        Validate.notNull(out, "out cannot be null");
+
+        // build the dictionary of every key that has a value in any of the entries
+        int[] indexByOrdinal = new int[DataKey.count()];
+        Arrays.fill(indexByOrdinal, -1);
+        Map<String, Integer> indexByName = new HashMap<String, Integer>();
+        List<String> names = new ArrayList<String>();
+        for (DataEntry entry : entries) {
+            DataSlots slots = entry.slots();
+            for (int ordinal = 0; ordinal < slots.length(); ordinal++) {
+                if (slots.type(ordinal) != DataSlots.EMPTY) {
+                    if (ordinal >= indexByOrdinal.length) {
+                        // a key was defined after the dictionary array was created
+                        int length = indexByOrdinal.length;
+                        indexByOrdinal = Arrays.copyOf(indexByOrdinal, DataKey.count());
+                        Arrays.fill(indexByOrdinal, length, indexByOrdinal.length, -1);
+                    }
+                    if (indexByOrdinal[ordinal] == -1) {
+                        indexByOrdinal[ordinal] = names.size();
+                        names.add(DataKey.byOrdinal(ordinal).name());
+                    }
+                }
+            }
+            for (String name : slots.undefined().keySet()) {
+                if (!indexByName.containsKey(name)) {
+                    indexByName.put(name, names.size());
+                    names.add(name);
+                }
+            }
+        }
+
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        writeVarint(data, names.size());
+        for (String name : names) {
+            writeString(data, name);
+        }
+        writeVarint(data, entries.size());
+        Map<String, Integer> stringRefs = new HashMap<String, Integer>();
+        for (DataEntry entry : entries) {
+            DataSlots slots = entry.slots();
+            Map<String, Object> undefined = slots.undefined();
+            int pairCount = undefined.size();
+            for (int ordinal = 0; ordinal < slots.length(); ordinal++) {
+                if (slots.type(ordinal) != DataSlots.EMPTY) {
+                    pairCount++;
+                }
+            }
+            writeVarint(data, pairCount);
+            for (int ordinal = 0; ordinal < slots.length(); ordinal++) {
+                byte type = slots.type(ordinal);
+                if (type != DataSlots.EMPTY) {
+                    writeVarint(data, indexByOrdinal[ordinal]);
+                    if (type == DataSlots.OBJECT) {
+                        writeValue(data, slots.get(ordinal).toString(), stringRefs);
+                        continue;
+                    }
+                    data.writeByte(type);
+                    switch (type) {
+                        case DataSlots.FLOAT:
+                            data.writeFloat((float) Double.longBitsToDouble(slots.bits(ordinal)));
+                            break;
+                        case DataSlots.DOUBLE:
+                            data.writeLong(slots.bits(ordinal));
+                            break;
+                        default:
+                            writeVarint(data, zigzag(slots.bits(ordinal)));
+                            break;
+                    }
+                }
+            }
+            for (Map.Entry<String, Object> valueEntry : undefined.entrySet()) {
+                writeVarint(data, indexByName.get(valueEntry.getKey()));
+                writeValue(data, valueEntry.getValue().toString(), stringRefs);
+            }
+        }
+        data.flush();
+    }
+
+    /**
+     * Read entries in the binary format from the given InputStream.
+     * The given stream is neither buffered nor closed by this method.
+     * @param in - The InputStream to read from
+     * @return a new List of the DataEntries that were read
+     * @throws IOException if the given InputStream throws an IOException, or if the data is not in the binary format
+     */
+    public static List<DataEntry> read(InputStream in) throws IOException {
+        return read(in, Long.MAX_VALUE);
+    }
+
+    /**
+     * Read entries in the binary format from the given InputStream that has at most the given number of bytes.
+     * Every count and length in the data is checked against the given length as well as against {@link #MAX_KEYS} and
+     * {@link #MAX_STRING_LENGTH}, so corrupted data is rejected before anything is allocated for it.
+     * The given stream is neither buffered nor closed by this method.
+     * @param in - The InputStream to read from
+     * @param length - The number of bytes in the given stream, such as the length of the file it reads
+     * @return a new List of the DataEntries that were read
+     * @throws IOException if the given InputStream throws an IOException, or if the data is not in the binary format
+     */
+    public static List<DataEntry> read(InputStream in, long length) throws IOException {
+        Validate.notNull(in, "in cannot be null");
+        Validate.isTrue(length >= 0, "length cannot be negative");
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new StreamCorruptedException("The data is not in the binary DataEntry format");
+        }
+        int version = data.readUnsignedByte();
+        if (version != VERSION) {
+            throw new StreamCorruptedException("Unsupported binary DataEntry format version " + version);
+        }
+
+        // every key, entry, and value takes at least one byte, so no count or string length can exceed the data length
+        long maxString = Math.min(length, MAX_STRING_LENGTH);
+        int keyCount = readCount(data, Math.min(length, MAX_KEYS));
+        String[] names = new String[keyCount];
+        DataKey[] keys = new DataKey[keyCount];
+        byte[] buffer = new byte[64];
+        for (int i = 0; i < keyCount; i++) {
+            int nameLength = readCount(data, maxString);
+            if (nameLength > buffer.length) {
+                buffer = new byte[nameLength];
+            }
+            data.readFully(buffer, 0, nameLength);
+            names[i] = new String(buffer, 0, nameLength, UTF_8);
+            keys[i] = DataKey.lookup(names[i]);
+        }
+
+        int entryCount = readCount(data, length);
+        List<String> strings = new ArrayList<String>();
+        List<DataEntry> entries = new ArrayList<DataEntry>(Math.min(entryCount, 1 << 16));
+        for (int i = 0; i < entryCount; i++) {
+            DataEntry entry = new DataEntry();
+            DataSlots slots = entry.slots();
+            int pairCount = readCount(data, length);
+            for (int j = 0; j < pairCount; j++) {
+                int keyIndex = readCount(data, keyCount - 1);
+                DataKey key = keys[keyIndex];
+                byte type = data.readByte();
+                switch (type) {
+                    case STRING:
+                    case STRING_REF:
+                        String value;
+                        if (type == STRING) {
+                            int valueLength = readCount(data, maxString);
+                            if (valueLength > buffer.length) {
+                                buffer = new byte[(int) Math.min(Math.max(valueLength, buffer.length * 2L), maxString)];
+                            }
+                            data.readFully(buffer, 0, valueLength);
+                            value = new String(buffer, 0, valueLength, UTF_8);
+                            strings.add(value);
+                        } else {
+                            int ref = readCount(data, strings.size() - 1);
+                            value = strings.get(ref);
+                        }
+                        if (key != null) {
+                            slots.put(key, value);
+                        } else {
+                            slots.put(names[keyIndex], value);
+                        }
+                        break;
+                    case DataSlots.BYTE:
+                    case DataSlots.SHORT:
+                    case DataSlots.INT:
+                    case DataSlots.LONG:
+                    case DataSlots.FLOAT:
+                    case DataSlots.DOUBLE:
+                        long bits;
+                        if (type == DataSlots.FLOAT) {
+                            bits = Double.doubleToRawLongBits(data.readFloat());
+                        } else if (type == DataSlots.DOUBLE) {
+                            bits = data.readLong();
+                        } else {
+                            bits = unzigzag(readVarint(data));
+                        }
+                        if (key != null) {
+                            slots.setPrimitive(key.ordinal, type, bits);
+                        } else {
+                            slots.put(names[keyIndex], DataSlots.box(type, bits));
+                        }
+                        break;
+                    default:
+                        throw new StreamCorruptedException("Invalid value type " + type);
+                }
+            }
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    /**
+     * Convert the text format to the binary format. Each non-empty line read from the given Reader is parsed as a DataEntry,
+     * and every value that is a number is written as a number if it would be formatted back to the same text
+     * @param in - The Reader of DataEntry Strings separated by line breaks
+     * @param out - The OutputStream to write the binary format to
+     * @throws IOException if the Reader or OutputStream throws an IOException
+     */
+    public static void fromText(Reader in, OutputStream out) throws IOException {
+        Validate.notNull(in, "in cannot be null");
+        BufferedReader reader = (in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in));
+        List<DataEntry> entries = new ArrayList<DataEntry>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (!line.trim().isEmpty()) {
+                DataEntry entry = new DataEntry(line);
+                entry.slots().compactNumbers();
+                entries.add(entry);
+            }
+        }
+        write(entries, out);
+    }
+
+    /**
+     * Convert the binary format to the text format, with each entry on its own line as written by
+     * {@link DataEntry#formatAll(Collection, Appendable)}
+     * @param in - The InputStream to read the binary format from
+     * @param out - The Appendable to write the DataEntry Strings to
+     * @throws IOException if the InputStream or Appendable throws an IOException, or if the data is not in the binary format
+     */
+    public static void toText(InputStream in, Appendable out) throws IOException {
+        DataEntry.formatAll(read(in), out);
+    }
+
+
+    private static void writeValue(DataOutputStream data, String value, Map<String, Integer> stringRefs) throws IOException {
+        Integer ref = stringRefs.get(value);
+        if (ref != null) {
+            data.writeByte(STRING_REF);
+            writeVarint(data, ref);
+        } else {
+            stringRefs.put(value, stringRefs.size());
+            data.writeByte(STRING);
+            writeString(data, value);
+        }
+    }
+
+    private static void writeString(DataOutputStream data, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF_8);
+        if (bytes.length > MAX_STRING_LENGTH) {
+            throw new IllegalArgumentException("A key name or value cannot be longer than " + MAX_STRING_LENGTH + " bytes");
+        }
+        writeVarint(data, bytes.length);
+        data.write(bytes);
+    }
+
+    private static void writeVarint(DataOutputStream data, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            data.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        data.writeByte((int) value);
+    }
+
+    private static long readVarint(DataInputStream data) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            int b = data.read();
+            if (b == -1) {
+                throw new EOFException();
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Malformed varint");
+    }
+
+    private static int readCount(DataInputStream data, long max) throws IOException {
+        long count = readVarint(data);
+        if (count < 0 || count > Math.min(max, Integer.MAX_VALUE)) {
+            throw new StreamCorruptedException("Invalid count or length " + count);
+        }
+        return (int) count;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+}
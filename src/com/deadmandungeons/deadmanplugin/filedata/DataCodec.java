@@ -0,0 +1,462 @@
+package com.deadmandungeons.deadmanplugin.filedata;
+
+import com.deadmandungeons.deadmanplugin.Coord;
+import com.deadmandungeons.deadmanplugin.DeadmanUtils;
+import com.deadmandungeons.deadmanplugin.PlayerId;
+import com.deadmandungeons.deadmanplugin.WorldCoord;
+import com.deadmandungeons.deadmanplugin.filedata.DataEntry.DataKey;
+import com.deadmandungeons.deadmanplugin.timer.GlobalTimer;
+import com.deadmandungeons.deadmanplugin.timer.LocalTimer;
+import com.deadmandungeons.deadmanplugin.timer.Timer;
+import org.apache.commons.lang.Validate;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.material.MaterialData;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.deadmandungeons.deadmanplugin.filedata.DataEntry.DATA_KEY;
+import static com.deadmandungeons.deadmanplugin.filedata.DataEntry.DURATION_KEY;
+import static com.deadmandungeons.deadmanplugin.filedata.DataEntry.ELAPSED_KEY;
+import static com.deadmandungeons.deadmanplugin.filedata.DataEntry.EXPIRE_KEY;
+import static com.deadmandungeons.deadmanplugin.filedata.DataEntry.ID_KEY;
+import static com.deadmandungeons.deadmanplugin.filedata.DataEntry.NAME_KEY;
+import static com.deadmandungeons.deadmanplugin.filedata.DataEntry.PITCH_KEY;
+import static com.deadmandungeons.deadmanplugin.filedata.DataEntry.UUID_KEY;
+import static com.deadmandungeons.deadmanplugin.filedata.DataEntry.WORLD_KEY;
+import static com.deadmandungeons.deadmanplugin.filedata.DataEntry.X_KEY;
+import static com.deadmandungeons.deadmanplugin.filedata.DataEntry.YAW_KEY;
+import static com.deadmandungeons.deadmanplugin.filedata.DataEntry.Y_KEY;
+import static com.deadmandungeons.deadmanplugin.filedata.DataEntry.Z_KEY;
+
+/**
+ * A DataCodec defines how an object of type T is represented by the values of a set of {@link DataKey}s in a {@link DataEntry}.<br>
+ * A codec is created once, and is then used with {@link DataEntry#get(DataCodec)} and {@link DataEntry#set(DataCodec, Object)}.
+ * The object decoded by {@link DataEntry#get(DataCodec)} is memoized in the DataEntry until the value of one of the codec's keys is set,
+ * or until the memoized object is no longer {@link #isCurrent(Object) current}.
+ * Codecs for objects that are made up of other objects can be composed with {@link RecordCodec}.<br>
+ * A set of default codecs is provided for the objects that a DataEntry supports directly, and a codec can be registered
+ * for a type using {@link #register(DataCodec)} so that it can be obtained with {@link #get(Class)}.
+ * @param <T> - The type of the object that this codec encodes and decodes
+ * @author Jon
+ */
+public abstract class DataCodec<T> {
+
+    private static final Map<Class<?>, DataCodec<?>> codecsByType = new ConcurrentHashMap<Class<?>, DataCodec<?>>();
+    private static volatile DataCodec<?>[] codecs = new DataCodec<?>[0];
+
+    // Indexed by the legacy Material id. Materials that do not have a legacy id are resolved by name
+    private static final Material[] MATERIALS_BY_ID;
+    private static final Map<String, Material> MATERIALS_BY_NAME = new ConcurrentHashMap<String, Material>();
+
+    static {
+        int maxId = -1;
+        for (Material material : Material.values()) {
+            maxId = Math.max(maxId, legacyId(material));
+        }
+        MATERIALS_BY_ID = new Material[maxId + 1];
+        for (Material material : Material.values()) {
+            int id = legacyId(material);
+            if (id >= 0 && MATERIALS_BY_ID[id] == null) {
+                MATERIALS_BY_ID[id] = material;
+            }
+        }
+    }
+
+    private final Class<T> type;
+    private final List<DataKey> keys;
+    private final long[] keyBits;
+    final int id;
+
+    /**
+     * @param type - The type of the object that the constructed codec encodes and decodes
+     * @param keys - The keys of all the values that the constructed codec reads and writes
+     * @throws IllegalArgumentException if type is null or if keys is empty
+     */
+    protected DataCodec(Class<T> type, DataKey... keys) throws IllegalArgumentException {
+        Validate.notNull(type, "type cannot be null");
+        Validate.notEmpty(keys, "keys cannot be empty");
+        this.type = type;
+        this.keys = Collections.unmodifiableList(Arrays.asList(keys.clone()));
+
+        int maxOrdinal = 0;
+        for (DataKey key : keys) {
+            Validate.notNull(key, "keys cannot contain null");
+            maxOrdinal = Math.max(maxOrdinal, key.ordinal);
+        }
+        keyBits = new long[(maxOrdinal >>> 6) + 1];
+        for (DataKey key : keys) {
+            keyBits[key.ordinal >>> 6] |= 1L << key.ordinal;
+        }
+        id = assignId(this);
+    }
+
+    private static synchronized int assignId(DataCodec<?> codec) {
+        DataCodec<?>[] current = codecs;
+        DataCodec<?>[] newCodecs = Arrays.copyOf(current, current.length + 1);
+        newCodecs[current.length] = codec;
+        codecs = newCodecs;
+        return current.length;
+    }
+
+    static DataCodec<?> byId(int id) {
+        return codecs[id];
+    }
+
+
+    /**
+     * @return the type of the object that this codec encodes and decodes
+     */
+    public final Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * @return an unmodifiable List of the keys of all the values that this codec reads and writes
+     */
+    public final List<DataKey> getKeys() {
+        return keys;
+    }
+
+    /**
+     * @param key - The key to check
+     * @return true if the given key is one of the keys of this codec
+     */
+    final boolean uses(DataKey key) {
+        int word = key.ordinal >>> 6;
+        return word < keyBits.length && (keyBits[word] & (1L << key.ordinal)) != 0;
+    }
+
+    /**
+     * @param value - The object to be formatted
+     * @return the formatted String representation of the given object as specified by {@link DataEntry#toString()}
+     */
+    public final String format(T value) {
+        Validate.notNull(value, "value cannot be null");
+        DataEntry entry = new DataEntry();
+        encode(value, entry);
+        return entry.toString();
+    }
+
+    /**
+     * @param entry - The DataEntry to decode the object from
+     * @return the object that the values of the given entry describe, or null if a value was missing or invalid
+     */
+    protected abstract T decode(DataEntry entry);
+
+    /**
+     * Set the values that represent the given object in the given entry
+     * @param value - The object to encode. This will never be null
+     * @param entry - The DataEntry to encode the object to
+     */
+    protected abstract void encode(T value, DataEntry entry);
+
+    /**
+     * A codec should override this if its objects can become invalid while the values of the entry stay the same,
+     * such as objects that reference a {@link World} which may be unloaded. By default this returns true.
+     * @param value - The memoized object
+     * @return true if the given memoized object can still be returned, or false if it must be decoded again
+     */
+    protected boolean isCurrent(T value) {
+        return true;
+    }
+
+    /**
+     * The decoded object is memoized, so if T is mutable this should return a copy of the given value.
+     * By default the given value is returned.
+     * @param value - The memoized object
+     * @return the object that will be returned by {@link DataEntry#get(DataCodec)}
+     */
+    protected T copy(T value) {
+        return value;
+    }
+
+
+    /**
+     * Register the given codec for its type, or replace the codec that was registered for the type
+     * @param codec - The codec to register
+     */
+    public static <T> void register(DataCodec<T> codec) {
+        Validate.notNull(codec, "codec cannot be null");
+        codecsByType.put(codec.getType(), codec);
+    }
+
+    /**
+     * @param type - The type of the desired codec
+     * @return the codec that was registered for the given type, or null if no codec has been registered for the type
+     */
+    public static <T> DataCodec<T> get(Class<T> type) {
+        @SuppressWarnings("unchecked")
+        DataCodec<T> codec = (DataCodec<T>) codecsByType.get(type);
+        return codec;
+    }
+
+
+    /**
+     * The {@link World} with the name of the value at key {@link DataEntry#WORLD_KEY}.<br>
+     * The memoized World is only returned while it is still the loaded World with its name, so that an entry never
+     * returns a World that has been unloaded.
+     */
+    public static final DataCodec<World> WORLD = new DataCodec<World>(World.class, WORLD_KEY) {
+
+        @Override
+        protected World decode(DataEntry entry) {
+            Object value = entry.getValue(WORLD_KEY);
+            if (value != null) {
+                World world = Bukkit.getWorld(value.toString());
+                if (world != null && !world.getName().equals(value)) {
+                    entry.putValue(WORLD_KEY, world.getName());
+                }
+                return world;
+            }
+            return null;
+        }
+
+        @Override
+        protected void encode(World world, DataEntry entry) {
+            entry.setValue(WORLD_KEY, world.getName());
+        }
+
+        @Override
+        protected boolean isCurrent(World world) {
+            return Bukkit.getWorld(world.getName()) == world;
+        }
+    };
+
+    /**
+     * The {@link Coord} of the {@link DataEntry#X_KEY}, {@link DataEntry#Y_KEY}, and {@link DataEntry#Z_KEY} values
+     */
+    public static final DataCodec<Coord> COORD = new DataCodec<Coord>(Coord.class, X_KEY, Y_KEY, Z_KEY) {
+
+        @Override
+        protected Coord decode(DataEntry entry) {
+            if (entry.hasNumber(X_KEY) && entry.hasNumber(Y_KEY) && entry.hasNumber(Z_KEY)) {
+                return new Coord(entry.getInt(X_KEY), entry.getInt(Y_KEY), entry.getInt(Z_KEY));
+            }
+            return null;
+        }
+
+        @Override
+        protected void encode(Coord coord, DataEntry entry) {
+            entry.setValue(X_KEY, coord.getX());
+            entry.setValue(Y_KEY, coord.getY());
+            entry.setValue(Z_KEY, coord.getZ());
+        }
+    };
+
+    /**
+     * The {@link WorldCoord} of the {@link #WORLD} and {@link #COORD} values. Like the World, it is decoded again if its World was unloaded
+     */
+    public static final DataCodec<WorldCoord> WORLD_COORD = new RecordCodec<WorldCoord>(WorldCoord.class, WORLD, COORD) {
+
+        @Override
+        protected WorldCoord decode(DataEntry entry) {
+            World world = entry.get(WORLD);
+            Coord coord = entry.get(COORD);
+            if (world != null && coord != null && coord.getY() >= 0 && coord.getY() <= world.getMaxHeight()) {
+                return new WorldCoord(world, coord);
+            }
+            return null;
+        }
+
+        @Override
+        protected void encode(WorldCoord coord, DataEntry entry) {
+            entry.set(WORLD, coord.getWorld());
+            entry.set(COORD, coord);
+        }
+
+        @Override
+        protected boolean isCurrent(WorldCoord coord) {
+            return WORLD.isCurrent(coord.getWorld());
+        }
+    };
+
+    /**
+     * The {@link Location} of the {@link #WORLD}, {@link DataEntry#X_KEY}, {@link DataEntry#Y_KEY}, {@link DataEntry#Z_KEY}
+     * and optionally {@link DataEntry#YAW_KEY}, {@link DataEntry#PITCH_KEY} values. Like the World, it is decoded again if its World was unloaded
+     */
+    public static final DataCodec<Location> LOCATION = new DataCodec<Location>(Location.class, WORLD_KEY, X_KEY, Y_KEY, Z_KEY, YAW_KEY,
+            PITCH_KEY) {
+
+        @Override
+        protected Location decode(DataEntry entry) {
+            World world = entry.get(WORLD);
+            if (world != null && entry.hasNumber(X_KEY) && entry.hasNumber(Y_KEY) && entry.hasNumber(Z_KEY)) {
+                Location loc = new Location(world, entry.getDouble(X_KEY), entry.getDouble(Y_KEY), entry.getDouble(Z_KEY));
+                loc.setYaw((float) entry.getDouble(YAW_KEY));
+                loc.setPitch((float) entry.getDouble(PITCH_KEY));
+                return loc;
+            }
+            return null;
+        }
+
+        @Override
+        protected void encode(Location location, DataEntry entry) {
+            entry.set(WORLD, location.getWorld());
+            entry.setValue(X_KEY, doubleOrInt(location.getX()));
+            entry.setValue(Y_KEY, doubleOrInt(location.getY()));
+            entry.setValue(Z_KEY, doubleOrInt(location.getZ()));
+            entry.setValue(YAW_KEY, (location.getYaw() != 0 ? location.getYaw() : null));
+            entry.setValue(PITCH_KEY, (location.getPitch() != 0 ? location.getPitch() : null));
+        }
+
+        @Override
+        protected boolean isCurrent(Location location) {
+            return WORLD.isCurrent(location.getWorld());
+        }
+
+        @Override
+        protected Location copy(Location location) {
+            return location.clone();
+        }
+    };
+
+    /**
+     * The {@link MaterialData} of the {@link DataEntry#ID_KEY} and {@link DataEntry#DATA_KEY} values.<br>
+     * The ID value is the legacy id of the Material, or the Material name if the Material does not have a legacy id
+     */
+    public static final DataCodec<MaterialData> MATERIAL_DATA = new DataCodec<MaterialData>(MaterialData.class, ID_KEY, DATA_KEY) {
+
+        @Override
+        protected MaterialData decode(DataEntry entry) {
+            Material material = getMaterial(entry);
+            Number data = entry.getNumber(DATA_KEY);
+            if (material != null && data != null) {
+                return new MaterialData(material, data.byteValue());
+            }
+            return null;
+        }
+
+        @Override
+        protected void encode(MaterialData materialData, DataEntry entry) {
+            Material material = materialData.getItemType();
+            int id = legacyId(material);
+            entry.setValue(ID_KEY, (id >= 0 ? id : material.name()));
+            entry.setValue(DATA_KEY, materialData.getData());
+        }
+
+        @Override
+        protected MaterialData copy(MaterialData materialData) {
+            return materialData.clone();
+        }
+    };
+
+    /**
+     * The {@link GlobalTimer} or {@link LocalTimer} of the {@link DataEntry#DURATION_KEY} value, and either the
+     * {@link DataEntry#EXPIRE_KEY} or {@link DataEntry#ELAPSED_KEY} value
+     */
+    public static final DataCodec<Timer> TIMER = new DataCodec<Timer>(Timer.class, DURATION_KEY, EXPIRE_KEY, ELAPSED_KEY) {
+
+        @Override
+        protected Timer decode(DataEntry entry) {
+            long duration = entry.getLong(DURATION_KEY);
+            if (duration > 0) {
+                long expire = entry.getLong(EXPIRE_KEY);
+                long elapsed = entry.getLong(ELAPSED_KEY, -1);
+                if (expire > 0) {
+                    return new GlobalTimer(duration, expire);
+                } else if (elapsed >= 0) {
+                    return new LocalTimer(duration, elapsed);
+                }
+            }
+            return null;
+        }
+
+        @Override
+        protected void encode(Timer timer, DataEntry entry) {
+            entry.setValue(DURATION_KEY, timer.getDuration());
+            if (timer instanceof GlobalTimer) {
+                entry.setValue(EXPIRE_KEY, ((GlobalTimer) timer).getExpire());
+            } else {
+                entry.setValue(ELAPSED_KEY, ((LocalTimer) timer).getElapsed());
+            }
+        }
+
+        @Override
+        protected Timer copy(Timer timer) {
+            // The memoized timer is never started, but a new timer is returned because timers are stateful
+            if (timer instanceof GlobalTimer) {
+                return new GlobalTimer(timer.getDuration(), ((GlobalTimer) timer).getExpire());
+            }
+            return new LocalTimer(timer.getDuration(), ((LocalTimer) timer).getElapsed());
+        }
+    };
+
+    /**
+     * The {@link PlayerId} of the {@link DataEntry#UUID_KEY} and {@link DataEntry#NAME_KEY} values
+     */
+    public static final DataCodec<PlayerId> PLAYER_ID = new DataCodec<PlayerId>(PlayerId.class, UUID_KEY, NAME_KEY) {
+
+        @Override
+        protected PlayerId decode(DataEntry entry) {
+            Object uuid = entry.getValue(UUID_KEY);
+            Object usermane = entry.getValue(NAME_KEY);
+            if (uuid != null && DeadmanUtils.isUUID(uuid.toString()) && usermane != null) {
+                return new PlayerId(UUID.fromString(uuid.toString()), usermane.toString());
+            }
+            return null;
+        }
+
+        @Override
+        protected void encode(PlayerId playerId, DataEntry entry) {
+            entry.setValue(UUID_KEY, playerId.getId().toString());
+            entry.setValue(NAME_KEY, playerId.getUsername().toLowerCase());
+        }
+    };
+
+    static {
+        register(WORLD);
+        register(COORD);
+        register(WORLD_COORD);
+        register(LOCATION);
+        register(MATERIAL_DATA);
+        register(TIMER);
+        register(PLAYER_ID);
+    }
+
+    private static Material getMaterial(DataEntry entry) {
+        Number id = entry.getNumber(ID_KEY);
+        if (id != null) {
+            int index = id.intValue();
+            return (index >= 0 && index < MATERIALS_BY_ID.length ? MATERIALS_BY_ID[index] : null);
+        }
+        Object name = entry.getValue(ID_KEY);
+        if (name != null) {
+            String materialName = name.toString();
+            Material material = MATERIALS_BY_NAME.get(materialName);
+            if (material == null) {
+                material = Material.matchMaterial(materialName);
+                if (material != null && MATERIALS_BY_NAME.size() < Material.values().length * 2) {
+                    MATERIALS_BY_NAME.put(materialName, material);
+                }
+            }
+            return material;
+        }
+        return null;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static int legacyId(Material material) {
+        try {
+            return material.getId();
+        } catch (IllegalArgumentException e) {
+            // Modern servers throw this for materials that do not have a legacy id
+            return -1;
+        }
+    }
+
+    private static Object doubleOrInt(double coordValue) {
+        if (coordValue % 1 == 0) {
+            return (int) coordValue;
+        }
+        return coordValue;
+    }
+
+}
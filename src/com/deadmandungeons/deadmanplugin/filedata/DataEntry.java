@@ -2,6 +2,7 @@ package com.deadmandungeons.deadmanplugin.filedata;
 
 import com.deadmandungeons.deadmanplugin.Coord;
 import com.deadmandungeons.deadmanplugin.DeadmanUtils;
+import com.deadmandungeons.deadmanplugin.NumberParser;
 import com.deadmandungeons.deadmanplugin.PlayerId;
 import com.deadmandungeons.deadmanplugin.WorldCoord;
 import com.deadmandungeons.deadmanplugin.timer.GlobalTimer;
@@ -9,23 +10,27 @@ import com.deadmandungeons.deadmanplugin.timer.LocalTimer;
 import com.deadmandungeons.deadmanplugin.timer.Timer;
 import com.google.common.collect.ImmutableMap;
 import org.apache.commons.lang.Validate;
-import org.apache.commons.lang.math.NumberUtils;
-import org.bukkit.Bukkit;
 import org.bukkit.Location;
-import org.bukkit.Material;
 import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.block.Sign;
 import org.bukkit.material.MaterialData;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.UUID;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-// TODO this entire class can be refactored to improve abstraction by defining an object's keys in the object itself
-
 /**
  * A container class for the Key/Value pairs in a single data entry in a YAML file.<br>
  * Additional formatting utility methods are provided to format specific objects as specified by {@link #toString()}<br>
@@ -40,40 +45,39 @@ public class DataEntry implements Cloneable {
     private static final String KEY_REGEX = "([a-zA-Z][a-zA-Z0-9$_]*?)";
     private static final Pattern KEY_PATTERN = Pattern.compile(KEY_REGEX);
     private static final Pattern VALUE_PATTERN = Pattern.compile(KEY_REGEX + ":([^,]+)");
-    private static final String INVALID_MSG_1 = "The given value has a comma character. Commas are not allowed";
-    private static final String INVALID_MSG_2 = "The value for key '%s' has a comma character. Commas are not allowed";
-
-    public static final DataKey WORLD_KEY = new DataKey("WORLD");
-    public static final DataKey X_KEY = new DataKey("X");
-    public static final DataKey Y_KEY = new DataKey("Y");
-    public static final DataKey Z_KEY = new DataKey("Z");
-    public static final DataKey YAW_KEY = new DataKey("YAW");
-    public static final DataKey PITCH_KEY = new DataKey("PITCH");
+    // The same as VALUE_PATTERN, except that an escaped comma does not end the value group
+    private static final Pattern ESCAPED_VALUE_PATTERN = Pattern.compile(KEY_REGEX + ":((?:[^,\\\\]|\\\\.?)+)");
+    // Compatibility flag to parse entries with the above patterns rather than the DataEntryTokenizer
+    private static final boolean LEGACY_PARSER = Boolean.getBoolean("deadmanplugin.dataentry.legacyParser");
+
+    public static final DataKey WORLD_KEY = DataKey.define("WORLD");
+    public static final DataKey X_KEY = DataKey.define("X");
+    public static final DataKey Y_KEY = DataKey.define("Y");
+    public static final DataKey Z_KEY = DataKey.define("Z");
+    public static final DataKey YAW_KEY = DataKey.define("YAW");
+    public static final DataKey PITCH_KEY = DataKey.define("PITCH");
 
     /* BlockState related keys */
-    public static final DataKey ID_KEY = new DataKey("ID");
-    public static final DataKey DATA_KEY = new DataKey("DATA");
+    public static final DataKey ID_KEY = DataKey.define("ID");
+    public static final DataKey DATA_KEY = DataKey.define("DATA");
 
     /* Timer related keys */
-    public static final DataKey DURATION_KEY = new DataKey("DURATION");
-    public static final DataKey EXPIRE_KEY = new DataKey("EXPIRE");
-    public static final DataKey ELAPSED_KEY = new DataKey("ELAPSED");
+    public static final DataKey DURATION_KEY = DataKey.define("DURATION");
+    public static final DataKey EXPIRE_KEY = DataKey.define("EXPIRE");
+    public static final DataKey ELAPSED_KEY = DataKey.define("ELAPSED");
 
     /* PlayerId related keys */
-    public static final DataKey UUID_KEY = new DataKey("UUID");
-    public static final DataKey NAME_KEY = new DataKey("NAME");
-
-    private static final Map<Integer, Material> MATERIALS_BY_ID;
+    public static final DataKey UUID_KEY = DataKey.define("UUID");
+    public static final DataKey NAME_KEY = DataKey.define("NAME");
 
-    static {
-        ImmutableMap.Builder<Integer, Material> materialsByIdBuilder = ImmutableMap.builder();
-        for (Material material : Material.values()) {
-            materialsByIdBuilder.put(material.getId(), material);
-        }
-        MATERIALS_BY_ID = materialsByIdBuilder.build();
-    }
+    private final DataSlots values;
+    // The tokenizer of a lazily decoded entry. This is null once the entire entry String has been decoded
+    private DataEntryTokenizer pending;
 
-    private final Map<String, Object> values;
+    // The ordinals of the keys whose value has been changed by setValue since this entry was created or last cleaned
+    private BitSet dirty;
+    // Objects decoded by a DataCodec indexed by the codec id. Each is reset when a value of one of its codec's keys is set
+    private Object[] decoded;
 
     /**
      * Construct an empty DataEntry instance
@@ -88,15 +92,70 @@ public class DataEntry implements Cloneable {
      * @param entryStr - The raw data entry String containing the key/value pairs to include in the returned DataEntry
      */
     public DataEntry(String entryStr) {
-        values = new HashMap<String, Object>();
+        this(entryStr, false);
+    }
+
+    private DataEntry(String entryStr, boolean lazy) {
+        values = new DataSlots();
         if (entryStr != null) {
-            Matcher valueMatcher = VALUE_PATTERN.matcher(entryStr);
-            while (valueMatcher.find()) {
-                String key = valueMatcher.group(1);
-                String value = valueMatcher.group(2);
-                values.put(key.toUpperCase(), value);
+            if (lazy) {
+                pending = new DataEntryTokenizer(entryStr);
+                return;
+            }
+            if (LEGACY_PARSER) {
+                parseLegacy(entryStr, values);
+            } else {
+                DataEntryTokenizer tokenizer = new DataEntryTokenizer(entryStr);
+                while (tokenizer.next()) {
+                    values.put(tokenizer.key(), tokenizer.value());
+                }
+            }
+        }
+    }
+
+    /**
+     * Parse the given entryStr with the regex patterns that were used before the DataEntryTokenizer.
+     * Values of an entry that starts with the {@link DataEntryTokenizer#ESCAPED_MARKER} are unescaped.
+     */
+    static int parseLegacy(String entryStr, DataSlots values) {
+        int count = 0;
+        boolean escaped = (!entryStr.isEmpty() && entryStr.charAt(0) == DataEntryTokenizer.ESCAPED_MARKER);
+        Matcher valueMatcher = (escaped ? ESCAPED_VALUE_PATTERN : VALUE_PATTERN).matcher(entryStr);
+        while (valueMatcher.find()) {
+            String key = valueMatcher.group(1).toUpperCase();
+            String value = valueMatcher.group(2);
+            if (escaped) {
+                value = DataEntryTokenizer.unescape(value, 0, value.length());
             }
+            values.put(key, (ValuePool.isPooled(key) ? ValuePool.intern(value) : value));
+            count++;
         }
+        return count;
+    }
+
+    /**
+     * Decode the given entryStr the same as {@link #DataEntry(String)}, but reject an entryStr that is not a valid entry
+     * @param entryStr - The raw data entry String containing the key/value pairs to include in the returned DataEntry
+     * @return a new DataEntry instance with the key/value pairs defined in the given entryStr
+     * @throws IllegalArgumentException if the given entryStr has no key/value pairs, or has input after its last key/value pair
+     */
+    static DataEntry decode(String entryStr) throws IllegalArgumentException {
+        DataEntry entry = new DataEntry();
+        int count = 0;
+        String trailingInput = null;
+        if (LEGACY_PARSER) {
+            count = parseLegacy(entryStr, entry.values);
+        } else {
+            DataEntryTokenizer tokenizer = new DataEntryTokenizer(entryStr);
+            while (tokenizer.next()) {
+                entry.values.put(tokenizer.key(), tokenizer.value());
+                count++;
+            }
+            trailingInput = tokenizer.trailingInput();
+        }
+        Validate.isTrue(count > 0, "entry has no key/value pairs: ", entryStr);
+        Validate.isTrue(trailingInput == null, "entry has invalid input after its last key/value pair: ", trailingInput);
+        return entry;
     }
 
     /**
@@ -110,6 +169,20 @@ public class DataEntry implements Cloneable {
         return new DataEntry(entryStr);
     }
 
+    /**
+     * Create a DataEntry that keeps the given raw entryStr and only decodes its key/value pairs on demand.
+     * Reading a value only scans the raw String until the requested key is found, and every pair decoded so far is kept.
+     * The entire String is decoded before the first write, or when the entire entry is needed such as by {@link #toString()}.<br>
+     * This is useful when loading many entries of which only a few keys will be read.<br>
+     * <b>Note:</b> If the raw String has the same key more than once, a lazily decoded entry will return the first
+     * value of that key until the entire String is decoded.
+     * @param entryStr - The raw data entry String containing the key/value pairs to include in the returned DataEntry
+     * @return a new lazily decoded DataEntry instance with the key/value pairs defined in the given entryStr
+     */
+    public static DataEntry lazy(String entryStr) {
+        return new DataEntry(entryStr, true);
+    }
+
     /**
      * @return a new DataEntry.Builder instance
      */
@@ -132,7 +205,7 @@ public class DataEntry implements Cloneable {
      */
     public static abstract class Builder<T extends Builder<T>> {
 
-        private Map<String, Object> values = new HashMap<String, Object>();
+        private DataSlots values = new DataSlots();
 
         private Location location;
         private MaterialData materialData;
@@ -181,25 +254,20 @@ public class DataEntry implements Cloneable {
         }
 
         /**
-         * <b>Note:</b> The given value cannot have a comma in the string returned by its toString invocation
          * @param key - The DataKey representing the value to set
          * @param value - The value to set. Indexed by the given Key.<br>
          * @return this builder
-         * @throws IllegalArgumentException if the given value has a comma in its String representation
          */
         public final T value(DataKey key, Object value) {
-            if (value.toString().contains(",")) {
-                throw new IllegalArgumentException(String.format(INVALID_MSG_2, key));
-            }
-            values.put(key.name(), value);
+            Validate.notNull(key, "key cannot be null");
+            values.put(key, value);
             return self();
         }
 
         /**
          * @return a new DataEntry for the key/value pairs specified in this build
-         * @throws IllegalArgumentException - if one of the values has a comma in the string returned by its toString invocation
          */
-        public DataEntry build() throws IllegalArgumentException {
+        public DataEntry build() {
             return new DataEntry(this);
         }
     }
@@ -220,6 +288,8 @@ public class DataEntry implements Cloneable {
         if (builder.playerId != null) {
             setPlayerId(builder.playerId);
         }
+        // a built entry has not been changed since it was created
+        dirty = null;
     }
 
 
@@ -238,23 +308,75 @@ public class DataEntry implements Cloneable {
      * or the given default if no value exists for the given key
      */
     public final Object getValue(DataKey key, Object def) {
-        Object value = values.get(key.name());
+        Object value = values.get(key);
+        if (value == null && pending != null) {
+            value = decodeUntil(key);
+        }
         return value != null ? value : def;
     }
 
     /**
-     * <b>Note:</b> The given value cannot have a comma in the string returned by its toString invocation
      * @param key - The Datakey representing the value to set
      * @param value - The value to set. Indexed by the given Key.<br>
      * If value is null, the key/value pair for the given key will be removed from this DataEntry.
      */
     public final void setValue(DataKey key, Object value) {
         Validate.notNull(key, "key cannot be null");
-        if (value != null) {
-            Validate.isTrue(!value.toString().contains(","), INVALID_MSG_1);
-            values.put(key.name(), value);
-        } else {
-            values.remove(key.name());
+        decodeAll();
+        boolean same = values.holds(key, value);
+        values.put(key, value);
+        invalidate(key);
+        if (!same) {
+            (dirty == null ? dirty = new BitSet() : dirty).set(key.ordinal);
+        }
+    }
+
+    /**
+     * Set the given value without resetting the decoded objects. This is used by a DataCodec to normalize
+     * a value that it decoded, which does not change the object that the value describes.
+     */
+    final void putValue(DataKey key, Object value) {
+        values.put(key, value);
+    }
+
+    private void invalidate(DataKey key) {
+        if (decoded != null) {
+            for (int id = 0; id < decoded.length; id++) {
+                if (decoded[id] != null && DataCodec.byId(id).uses(key)) {
+                    decoded[id] = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the values of this entry after the entire entry String has been decoded
+     */
+    final DataSlots slots() {
+        decodeAll();
+        return values;
+    }
+
+    private Object decodeUntil(DataKey key) {
+        DataEntryTokenizer tokenizer = pending;
+        String name = key.name();
+        while (tokenizer.next()) {
+            values.put(tokenizer.key(), tokenizer.value());
+            if (name.equals(tokenizer.key())) {
+                return values.get(key);
+            }
+        }
+        pending = null;
+        return null;
+    }
+
+    private void decodeAll() {
+        if (pending != null) {
+            DataEntryTokenizer tokenizer = pending;
+            while (tokenizer.next()) {
+                values.put(tokenizer.key(), tokenizer.value());
+            }
+            pending = null;
         }
     }
 
@@ -279,38 +401,167 @@ public class DataEntry implements Cloneable {
         if (value != null) {
             if (value instanceof Number) {
                 return (Number) value;
-            } else if (NumberUtils.isNumber(value.toString())) {
-                Number number = NumberUtils.createNumber(value.toString());
-                setValue(key, number);
-                return number;
+            } else if (parseNumber(key, value)) {
+                return (Number) values.get(key);
             }
         }
         return def;
     }
 
+    /**
+     * A decimal value is truncated to a long
+     * @param key - The Datakey representing the number to get
+     * @return the number value indexed by the given Key as a long, or 0 if a number value did not exist at the given Key
+     */
+    public final long getLong(DataKey key) {
+        return getLong(key, 0);
+    }
 
     /**
-     * @return The {@link World} object indexed at key {@link #WORLD_KEY},
-     * or null if a World value does not exist for the respective Key
+     * A decimal value is truncated to a long
+     * @param key - The Datakey representing the number to get
+     * @param def - The default value to return if no number value exists for the given key
+     * @return the number value indexed by the given Key as a long, or the default value if a number value did not exist at the given Key
      */
-    public final World getWorld() {
-        Object value = getValue(WORLD_KEY);
+    public final long getLong(DataKey key, long def) {
+        if (isNumber(key)) {
+            return values.getLong(key.ordinal);
+        }
+        Object value = getValue(key);
+        return (value instanceof Number ? ((Number) value).longValue() : def);
+    }
+
+    /**
+     * A decimal value is truncated to an int
+     * @param key - The Datakey representing the number to get
+     * @return the number value indexed by the given Key as an int, or 0 if a number value did not exist at the given Key
+     */
+    public final int getInt(DataKey key) {
+        return getInt(key, 0);
+    }
+
+    /**
+     * A decimal value is truncated to an int
+     * @param key - The Datakey representing the number to get
+     * @param def - The default value to return if no number value exists for the given key
+     * @return the number value indexed by the given Key as an int, or the default value if a number value did not exist at the given Key
+     */
+    public final int getInt(DataKey key, int def) {
+        if (isNumber(key)) {
+            return (int) values.getLong(key.ordinal);
+        }
+        Object value = getValue(key);
+        return (value instanceof Number ? ((Number) value).intValue() : def);
+    }
+
+    /**
+     * @param key - The Datakey representing the number to get
+     * @return the number value indexed by the given Key as a double, or 0 if a number value did not exist at the given Key
+     */
+    public final double getDouble(DataKey key) {
+        return getDouble(key, 0);
+    }
+
+    /**
+     * @param key - The Datakey representing the number to get
+     * @param def - The default value to return if no number value exists for the given key
+     * @return the number value indexed by the given Key as a double, or the default value if a number value did not exist at the given Key
+     */
+    public final double getDouble(DataKey key, double def) {
+        if (isNumber(key)) {
+            return values.getDouble(key.ordinal);
+        }
+        Object value = getValue(key);
+        return (value instanceof Number ? ((Number) value).doubleValue() : def);
+    }
+
+    /**
+     * @return true if a number value exists for the given key
+     */
+    final boolean hasNumber(DataKey key) {
+        return isNumber(key) || getValue(key) instanceof Number;
+    }
+
+    /**
+     * @return true if the value of the given key is held in a primitive slot, parsing a String value into the slot if needed
+     */
+    private boolean isNumber(DataKey key) {
+        if (DataSlots.isNumber(values.type(key.ordinal))) {
+            return true;
+        }
+        Object value = getValue(key);
+        return value != null && !(value instanceof Number) && parseNumber(key, value) && DataSlots.isNumber(values.type(key.ordinal));
+    }
+
+    private boolean parseNumber(DataKey key, Object value) {
+        NumberParser parser = new NumberParser();
+        if (parser.parse(value.toString())) {
+            values.put(key, parser);
+            return true;
+        }
+        return false;
+    }
+
+
+    /**
+     * The decoded object is memoized in this DataEntry until a value of one of the codec's keys is set,
+     * or until the memoized object is no longer {@link DataCodec#isCurrent(Object) current}.
+     * @param codec - The DataCodec of the object to get
+     * @return the object that the values of the codec's keys describe in this DataEntry,
+     * or null if the minimum required values did not exist, or were invalid
+     */
+    public final <T> T get(DataCodec<T> codec) {
+        Validate.notNull(codec, "codec cannot be null");
+        int id = codec.id;
+        if (decoded != null && id < decoded.length && decoded[id] != null) {
+            T memoized = codec.getType().cast(decoded[id]);
+            if (codec.isCurrent(memoized)) {
+                return codec.copy(memoized);
+            }
+            decoded[id] = null;
+        }
+        T value = codec.decode(this);
         if (value != null) {
-            World world = Bukkit.getWorld(value.toString());
-            if (world != null) {
-                setValue(WORLD_KEY, world.getName());
+            if (decoded == null || id >= decoded.length) {
+                decoded = Arrays.copyOf((decoded != null ? decoded : new Object[0]), id + 1);
             }
-            return world;
+            decoded[id] = value;
+            return codec.copy(value);
         }
         return null;
     }
 
+    /**
+     * @param codec - The DataCodec of the object to set
+     * @param value - The object to set and be represented by the codec's keys.<br>
+     * If value is null, the key/value pairs of all of the codec's keys will be removed from this DataEntry.
+     */
+    public final <T> void set(DataCodec<T> codec, T value) {
+        Validate.notNull(codec, "codec cannot be null");
+        if (value != null) {
+            codec.encode(value, this);
+        } else {
+            for (DataKey key : codec.getKeys()) {
+                setValue(key, null);
+            }
+        }
+    }
+
+
+    /**
+     * @return The {@link World} object indexed at key {@link #WORLD_KEY},
+     * or null if a World value does not exist for the respective Key
+     */
+    public final World getWorld() {
+        return get(DataCodec.WORLD);
+    }
+
     /**
      * @param world - The {@link World} object to set. Indexed by key {@link #WORLD_KEY}.<br>
      * If world is null, the World key/value pair will be removed from this DataEntry.
      */
     public final void setWorld(World world) {
-        setValue(WORLD_KEY, world.getName());
+        set(DataCodec.WORLD, world);
     }
 
 
@@ -319,13 +570,7 @@ public class DataEntry implements Cloneable {
      * Or null if the minimum required values did not exist, or were invalid
      */
     public final Coord getCoord() {
-        Number x = getNumber(X_KEY);
-        Number y = getNumber(Y_KEY);
-        Number z = getNumber(Z_KEY);
-        if (x != null && y != null && z != null) {
-            return new Coord(x.intValue(), y.intValue(), z.intValue());
-        }
-        return null;
+        return get(DataCodec.COORD);
     }
 
     /**
@@ -334,15 +579,7 @@ public class DataEntry implements Cloneable {
      * If coord is null, all of the above key/value pairs will be removed from this DataEntry.
      */
     public final void setCoord(Coord coord) {
-        if (coord != null) {
-            setValue(X_KEY, coord.getX());
-            setValue(Y_KEY, coord.getY());
-            setValue(Z_KEY, coord.getZ());
-        } else {
-            setValue(X_KEY, null);
-            setValue(Y_KEY, null);
-            setValue(Z_KEY, null);
-        }
+        set(DataCodec.COORD, coord);
     }
 
     /**
@@ -350,7 +587,7 @@ public class DataEntry implements Cloneable {
      * @return the formatted String representation of the given Coord with the keys: {@link #X_KEY}, {@link #Y_KEY}, {@link #Z_KEY}
      */
     public static String formatCoord(Coord coord) {
-        return format(ImmutableMap.<DataKey, Object>of(X_KEY, coord.getX(), Y_KEY, coord.getY(), Z_KEY, coord.getZ()));
+        return DataCodec.COORD.format(coord);
     }
 
     /**
@@ -358,12 +595,7 @@ public class DataEntry implements Cloneable {
      * Or null if the minimum required values did not exist, or were invalid
      */
     public final WorldCoord getWorldCoord() {
-        World world = getWorld();
-        Coord coord = getCoord();
-        if (world != null && coord != null && coord.getY() >= 0 && coord.getY() <= world.getMaxHeight()) {
-            return new WorldCoord(world, coord);
-        }
-        return null;
+        return get(DataCodec.WORLD_COORD);
     }
 
     /**
@@ -372,13 +604,7 @@ public class DataEntry implements Cloneable {
      * If coord is null, all of the above key/value pairs will be removed from this DataEntry.
      */
     public final void setWorldCoord(WorldCoord coord) {
-        if (coord != null) {
-            setWorld(coord.getWorld());
-            setCoord(coord);
-        } else {
-            setWorld(null);
-            setCoord(null);
-        }
+        set(DataCodec.WORLD_COORD, coord);
     }
 
     /**
@@ -387,34 +613,18 @@ public class DataEntry implements Cloneable {
      * {@link #WORLD_KEY}, {@link #X_KEY}, {@link #Y_KEY}, {@link #Z_KEY}
      */
     public static String formatWorldCoord(WorldCoord coord) {
-        return format(ImmutableMap.<DataKey, Object>of(WORLD_KEY, coord.getWorld().getName(), X_KEY, coord.getX(), Y_KEY, coord.getY(), Z_KEY,
-                coord.getZ()));
+        return DataCodec.WORLD_COORD.format(coord);
     }
 
 
     /**
      * @return the Location defined by keys: {@link #WORLD_KEY}, {@link #X_KEY}, {@link #Y_KEY},
      * {@link #Z_KEY}, and optionally {@link #YAW_KEY}, {@link #PITCH_KEY}.
-     * Or null if the minimum required values did not exist, or were invalid
+     * Or null if the minimum required values did not exist, or were invalid.<br>
+     * The returned Location is a copy and can be modified freely.
      */
     public final Location getLocation() {
-        World world = getWorld();
-        Number x = getNumber(X_KEY);
-        Number y = getNumber(Y_KEY);
-        Number z = getNumber(Z_KEY);
-        if (world != null && x != null && y != null && z != null) {
-            Location loc = new Location(world, x.doubleValue(), y.doubleValue(), z.doubleValue());
-            Number yaw = getNumber(YAW_KEY);
-            if (yaw != null) {
-                loc.setYaw(yaw.floatValue());
-            }
-            Number pitch = getNumber(PITCH_KEY);
-            if (pitch != null) {
-                loc.setPitch(pitch.floatValue());
-            }
-            return loc;
-        }
-        return null;
+        return get(DataCodec.LOCATION);
     }
 
     /**
@@ -424,21 +634,7 @@ public class DataEntry implements Cloneable {
      * If location is null, all of the above key/value pairs will be removed from this DataEntry.
      */
     public final void setLocation(Location location) {
-        if (location != null) {
-            setWorld(location.getWorld());
-            setValue(X_KEY, doubleOrInt(location.getX()));
-            setValue(Y_KEY, doubleOrInt(location.getY()));
-            setValue(Z_KEY, doubleOrInt(location.getZ()));
-            setValue(YAW_KEY, (location.getYaw() != 0 ? location.getYaw() : null));
-            setValue(PITCH_KEY, (location.getPitch() != 0 ? location.getPitch() : null));
-        } else {
-            setWorld(null);
-            setValue(X_KEY, null);
-            setValue(Y_KEY, null);
-            setValue(Z_KEY, null);
-            setValue(YAW_KEY, null);
-            setValue(PITCH_KEY, null);
-        }
+        set(DataCodec.LOCATION, location);
     }
 
     /**
@@ -447,50 +643,24 @@ public class DataEntry implements Cloneable {
      * {@link #WORLD_KEY}, {@link #X_KEY}, {@link #Y_KEY}, {@link #Z_KEY}, and optionally {@link #YAW_KEY}, {@link #PITCH_KEY}
      */
     public static String formatLocation(Location loc) {
-        ImmutableMap.Builder<DataKey, Object> mapBuilder = ImmutableMap.builder();
-        mapBuilder.put(WORLD_KEY, loc.getWorld().getName()).put(X_KEY, doubleOrInt(loc.getX())).put(Y_KEY, doubleOrInt(loc.getY()))
-                .put(Z_KEY, doubleOrInt(loc.getZ()));
-        if (loc.getYaw() != 0) {
-            mapBuilder.put(YAW_KEY, loc.getYaw());
-        }
-        if (loc.getPitch() != 0) {
-            mapBuilder.put(PITCH_KEY, loc.getPitch());
-        }
-        return format(mapBuilder.build());
-    }
-
-    private static Object doubleOrInt(double coordValue) {
-        if (coordValue % 1 == 0) {
-            return (int) coordValue;
-        }
-        return coordValue;
+        return DataCodec.LOCATION.format(loc);
     }
 
 
     /**
      * @return the {@link MaterialData} that this DataEntry describes with keys {@link #ID_KEY} and {@link #DATA_KEY}.
-     * null will be returned is there was a missing or invalid key/value pair
+     * null will be returned is there was a missing or invalid key/value pair.<br>
+     * The returned MaterialData is a copy and can be modified freely.
      */
     public final MaterialData getMaterialData() {
-        Number id = getNumber(ID_KEY);
-        Number data = getNumber(DATA_KEY);
-        if (id != null && data != null) {
-            return new MaterialData(MATERIALS_BY_ID.get(id.intValue()), data.byteValue());
-        }
-        return null;
+        return get(DataCodec.MATERIAL_DATA);
     }
 
     /**
      * @param materialData - The {@link MaterialData} to set and be represented by the {@link #ID_KEY} and {@link #DATA_KEY} keys.
      */
     public final void setMaterialData(MaterialData materialData) {
-        if (materialData != null) {
-            setValue(ID_KEY, materialData.getItemType().getId());
-            setValue(DATA_KEY, materialData.getData());
-        } else {
-            setValue(ID_KEY, null);
-            setValue(DATA_KEY, null);
-        }
+        set(DataCodec.MATERIAL_DATA, materialData);
     }
 
     /**
@@ -498,7 +668,7 @@ public class DataEntry implements Cloneable {
      * @return the formatted String representation of the given MaterialData with the {@link #ID_KEY} and {@link #DATA_KEY} keys.
      */
     public static String formatMaterialData(MaterialData materialData) {
-        return format(ImmutableMap.<DataKey, Object>of(ID_KEY, materialData.getItemType().getId(), DATA_KEY, materialData.getData()));
+        return DataCodec.MATERIAL_DATA.format(materialData);
     }
 
 
@@ -525,21 +695,11 @@ public class DataEntry implements Cloneable {
     /**
      * This DataEntry must contain the key/value pairs for the {@link #DURATION_KEY} key,
      * and either the {@link #EXPIRE_KEY} key or the {@link #ELAPSED_KEY} key.
-     * @return The GlobalTimer or LocalTimer that this DataEntry describes.
+     * @return A new GlobalTimer or LocalTimer that this DataEntry describes.
      * null will be returned if there was a missing or invalid key/value pair
      */
     public Timer getTimer() {
-        Number duration = getNumber(DURATION_KEY);
-        if (duration != null && duration.longValue() > 0) {
-            Number expire = getNumber(EXPIRE_KEY);
-            Number elapsed = getNumber(ELAPSED_KEY);
-            if (expire != null && expire.longValue() > 0) {
-                return new GlobalTimer(duration.longValue(), expire.longValue());
-            } else if (elapsed != null && elapsed.longValue() >= 0) {
-                return new LocalTimer(duration.longValue(), elapsed.longValue());
-            }
-        }
-        return null;
+        return get(DataCodec.TIMER);
     }
 
     /**
@@ -549,19 +709,7 @@ public class DataEntry implements Cloneable {
      * If timer is null, all of the above key/value pairs will be removed from this DataEntry.
      */
     public final void setTimer(Timer timer) {
-        if (timer != null) {
-            if (timer instanceof GlobalTimer) {
-                setValue(DURATION_KEY, timer.getDuration());
-                setValue(EXPIRE_KEY, ((GlobalTimer) timer).getExpire());
-            } else {
-                setValue(DURATION_KEY, timer.getDuration());
-                setValue(ELAPSED_KEY, ((LocalTimer) timer).getElapsed());
-            }
-        } else {
-            setValue(DURATION_KEY, null);
-            setValue(EXPIRE_KEY, null);
-            setValue(ELAPSED_KEY, null);
-        }
+        set(DataCodec.TIMER, timer);
     }
 
     /**
@@ -571,10 +719,7 @@ public class DataEntry implements Cloneable {
      * the {@link #ELAPSED_KEY} key if the given Timer is a {@link LocalTimer}
      */
     public static String formatTimer(Timer timer) {
-        if (timer instanceof GlobalTimer) {
-            return format(ImmutableMap.<DataKey, Object>of(DURATION_KEY, timer.getDuration(), EXPIRE_KEY, ((GlobalTimer) timer).getExpire()));
-        }
-        return format(ImmutableMap.<DataKey, Object>of(DURATION_KEY, timer.getDuration(), ELAPSED_KEY, ((LocalTimer) timer).getElapsed()));
+        return DataCodec.TIMER.format(timer);
     }
 
     /**
@@ -582,25 +727,14 @@ public class DataEntry implements Cloneable {
      * null will be returned is there was a missing or invalid key/value pair
      */
     public PlayerId getPlayerId() {
-        Object uuid = getValue(UUID_KEY);
-        Object usermane = getValue(NAME_KEY);
-        if (uuid != null && DeadmanUtils.isUUID(uuid.toString()) && usermane != null) {
-            return new PlayerId(UUID.fromString(uuid.toString()), usermane.toString());
-        }
-        return null;
+        return get(DataCodec.PLAYER_ID);
     }
 
     /**
      * @param playerId - The {@link PlayerId} to set and be represented by the {@link #UUID_KEY} and {@link #NAME_KEY} keys.
      */
     public void setPlayerId(PlayerId playerId) {
-        if (playerId != null) {
-            setValue(UUID_KEY, playerId.getId().toString());
-            setValue(NAME_KEY, playerId.getUsername().toLowerCase());
-        } else {
-            setValue(UUID_KEY, null);
-            setValue(NAME_KEY, null);
-        }
+        set(DataCodec.PLAYER_ID, playerId);
     }
 
     /**
@@ -608,6 +742,7 @@ public class DataEntry implements Cloneable {
      * @return the formatted String representation of the given PlayerId with the {@link #UUID_KEY} and {@link #NAME_KEY} keys.
      */
     public static String formatPlayerId(PlayerId playerId) {
+        // the username is not lower-cased here unlike setPlayerId
         return format(ImmutableMap.<DataKey, Object>of(UUID_KEY, playerId.getId(), NAME_KEY, playerId.getUsername()));
     }
 
@@ -638,21 +773,205 @@ public class DataEntry implements Cloneable {
      * <code>WORLD:Cynelia, X:-491, Y:23, Z:285, ID:68, DATA:4, DURATION:101m, PRICE:30000</code>
      * @return the formatted key/value pairs that this DataEntry represents in the format:<br>
      * <code>KEY1:some-value, KEY2:another-value, KEY3:key3-value</code><br>
+     * Any comma, backslash, line feed, or carriage return in a value is escaped with a backslash as
+     * <code>\,</code>, <code>\\</code>, <code>\n</code>, and <code>\r</code> respectively, and an entry with
+     * an escaped value starts with a backslash: <code>\NAME:a\, b, X:1</code>.
+     * An entry without that leading backslash is read as it was before values were escaped, so a value ends at
+     * the first comma and a backslash in it has no special meaning.
      */
     @Override
     public final String toString() {
-        StringBuilder entryBuiler = new StringBuilder();
-        for (Map.Entry<String, Object> valueEntry : values.entrySet()) {
-            format(entryBuiler, valueEntry.getKey(), valueEntry.getValue());
+        decodeAll();
+        StringBuilder entryBuiler = new StringBuilder(values.estimateLength());
+        try {
+            values.writeTo(entryBuiler);
+        } catch (IOException e) {
+            // This shouldn't happen because a StringBuilder does not throw an IOException
+            throw new IllegalStateException(e);
         }
         return entryBuiler.toString();
     }
 
+    /**
+     * Write the key/value pairs of this DataEntry to the given Appendable in the format specified by {@link #toString()}
+     * without creating an intermediate String.
+     * @param out - The Appendable to write this DataEntry to
+     * @throws IOException if the given Appendable throws an IOException
+     */
+    public final void writeTo(Appendable out) throws IOException {
+        Validate.notNull(out, "out cannot be null");
+        decodeAll();
+        values.writeTo(out);
+    }
+
+    /**
+     * Write each of the given entries to the given Appendable as specified by {@link #writeTo(Appendable)}
+     * separated by a line feed character. If out is a StringBuilder, its capacity is ensured up front
+     * with an estimate of the length of all the entries.
+     * @param entries - The DataEntries to write
+     * @param out - The Appendable to write the entries to
+     * @throws IOException if the given Appendable throws an IOException
+     */
+    public static void formatAll(Collection<? extends DataEntry> entries, Appendable out) throws IOException {
+        Validate.notNull(entries, "entries cannot be null");
+        Validate.notNull(out, "out cannot be null");
+        if (out instanceof StringBuilder) {
+            StringBuilder builder = (StringBuilder) out;
+            int length = builder.length();
+            for (DataEntry entry : entries) {
+                entry.decodeAll();
+                length += entry.values.estimateLength() + 1;
+            }
+            builder.ensureCapacity(length);
+        }
+        boolean first = true;
+        for (DataEntry entry : entries) {
+            if (!first) {
+                out.append('\n');
+            }
+            entry.writeTo(out);
+            first = false;
+        }
+    }
+
+    /**
+     * The values of the returned DataEntry are a structural copy of the values in this DataEntry.
+     * Values of an immutable type are shared, and any other value is copied as its String representation.
+     * A lazily decoded DataEntry stays lazily decoded in the clone.
+     * @return a new DataEntry with the same key/value pairs as this DataEntry
+     */
     @Override
     public DataEntry clone() {
-        // clone by parsing this DataEntry serialized as String rather than cloning values map
-        // because there is a chance that one of the set values is not immutable
-        return new DataEntry(toString());
+        return new DataEntry(this);
+    }
+
+    private DataEntry(DataEntry source) {
+        values = source.values.copy();
+        if (source.pending != null) {
+            pending = source.pending.copy();
+        }
+        if (source.dirty != null) {
+            dirty = (BitSet) source.dirty.clone();
+        }
+        // the decoded objects can be shared because a DataCodec copies any mutable object when it is returned
+        if (source.decoded != null) {
+            decoded = source.decoded.clone();
+        }
+    }
+
+
+    /**
+     * @return true if the value of any key has been changed with {@link #setValue(DataKey, Object)} (or any of the setters
+     * that use it) since this DataEntry was created or since {@link #clearDirty()} was last called
+     */
+    public final boolean isDirty() {
+        return dirty != null && !dirty.isEmpty();
+    }
+
+    /**
+     * @param key - The DataKey to check
+     * @return true if the value of the given key has been changed since this DataEntry was created or since
+     * {@link #clearDirty()} was last called
+     */
+    public final boolean isDirty(DataKey key) {
+        return dirty != null && dirty.get(key.ordinal);
+    }
+
+    /**
+     * @return a new Set of the keys whose value has been changed since this DataEntry was created or since
+     * {@link #clearDirty()} was last called, in the order of their ordinals
+     */
+    public final Set<DataKey> getDirtyKeys() {
+        Set<DataKey> dirtyKeys = new LinkedHashSet<DataKey>();
+        if (dirty != null) {
+            for (int ordinal = dirty.nextSetBit(0); ordinal >= 0; ordinal = dirty.nextSetBit(ordinal + 1)) {
+                dirtyKeys.add(DataKey.byOrdinal(ordinal));
+            }
+        }
+        return dirtyKeys;
+    }
+
+    /**
+     * Mark every key of this DataEntry as unchanged. This should be called once the entry has been persisted
+     */
+    public final void clearDirty() {
+        dirty = null;
+    }
+
+    /**
+     * @return a Patch with the current value of every dirty key, which can be applied to a copy of this DataEntry
+     * as it was when it was last clean to bring that copy up to date
+     */
+    public final Patch getChanges() {
+        decodeAll();
+        Patch patch = new Patch();
+        if (dirty != null) {
+            for (int ordinal = dirty.nextSetBit(0); ordinal >= 0; ordinal = dirty.nextSetBit(ordinal + 1)) {
+                patch.add(DataKey.byOrdinal(ordinal).name(), (values.type(ordinal) != DataSlots.EMPTY ? values.get(ordinal) : null));
+            }
+        }
+        return patch;
+    }
+
+    /**
+     * Values are compared with {@link Object#equals(Object)}, so a value of a different type, such as a number and the String
+     * it was parsed from, is included in the patch even if it would be formatted the same
+     * @param other - The DataEntry to compare this DataEntry to
+     * @return a Patch that changes this DataEntry into the given DataEntry when it is applied with {@link #applyPatch(Patch)}
+     */
+    public final Patch diff(DataEntry other) {
+        Validate.notNull(other, "other cannot be null");
+        DataSlots from = slots();
+        DataSlots to = other.slots();
+        Patch patch = new Patch();
+        int length = Math.max(from.length(), to.length());
+        for (int ordinal = 0; ordinal < length; ordinal++) {
+            Object fromValue = (from.type(ordinal) != DataSlots.EMPTY ? from.get(ordinal) : null);
+            Object toValue = (to.type(ordinal) != DataSlots.EMPTY ? to.get(ordinal) : null);
+            if (!sameValue(fromValue, toValue)) {
+                patch.add(DataKey.byOrdinal(ordinal).name(), toValue);
+            }
+        }
+        Map<String, Object> fromUndefined = from.undefined();
+        Map<String, Object> toUndefined = to.undefined();
+        for (Map.Entry<String, Object> valueEntry : toUndefined.entrySet()) {
+            if (!sameValue(fromUndefined.get(valueEntry.getKey()), valueEntry.getValue())) {
+                patch.add(valueEntry.getKey(), valueEntry.getValue());
+            }
+        }
+        for (String name : fromUndefined.keySet()) {
+            if (!toUndefined.containsKey(name)) {
+                patch.add(name, null);
+            }
+        }
+        return patch;
+    }
+
+    /**
+     * Set every value of the given patch in this DataEntry, and remove every key that the patch removes.
+     * Each changed key of a defined DataKey is marked as dirty.
+     * @param patch - The Patch to apply
+     */
+    public final void applyPatch(Patch patch) {
+        Validate.notNull(patch, "patch cannot be null");
+        for (Map.Entry<String, Object> change : patch.changes.entrySet()) {
+            DataKey key = DataKey.lookup(change.getKey());
+            if (key != null) {
+                setValue(key, change.getValue());
+            } else {
+                decodeAll();
+                values.put(change.getKey(), change.getValue());
+            }
+        }
+    }
+
+    private static boolean sameValue(Object value, Object other) {
+        if (value == other) {
+            return true;
+        } else if (value == null || other == null) {
+            return false;
+        }
+        return value.equals(other);
     }
 
 
@@ -661,36 +980,247 @@ public class DataEntry implements Cloneable {
      * @return A formatted String with the given key/value pairs as specified by {@link #toString()}
      */
     public static String format(Map<DataKey, Object> values) {
-        StringBuilder entryBuiler = new StringBuilder();
-        for (Map.Entry<DataKey, Object> valueEntry : values.entrySet()) {
-            format(entryBuiler, valueEntry.getKey().name().toUpperCase(), valueEntry.getValue());
+        StringBuilder entryBuiler = new StringBuilder(values.size() * 16);
+        boolean escaped = false;
+        try {
+            for (Map.Entry<DataKey, Object> valueEntry : values.entrySet()) {
+                escaped |= format(entryBuiler, valueEntry.getKey().name().toUpperCase(), valueEntry.getValue());
+            }
+        } catch (IOException e) {
+            // This shouldn't happen because a StringBuilder does not throw an IOException
+            throw new IllegalStateException(e);
+        }
+        if (escaped) {
+            entryBuiler.insert(0, DataEntryTokenizer.ESCAPED_MARKER);
         }
         return entryBuiler.toString();
     }
 
-    private static void format(StringBuilder entry, String key, Object value) {
+    private static boolean format(StringBuilder entry, String key, Object value) throws IOException {
         if (entry.length() > 0) {
             entry.append(", ");
         }
-        entry.append(key).append(":").append(value);
+        entry.append(key).append(":");
+        String valueStr = String.valueOf(value);
+        DataSlots.writeEscaped(entry, valueStr);
+        return DataSlots.needsEscaping(valueStr);
+    }
+
+
+    /**
+     * A set of changes to the values of a DataEntry, as created by {@link DataEntry#diff(DataEntry)} or {@link DataEntry#getChanges()}.
+     * Each change is either a new value for a key, or the removal of a key.
+     * A Patch is much smaller than the entry it applies to when only a few values change, so it is suited to persisting or
+     * replicating only the changes of an entry.
+     * @author Jon
+     */
+    public static final class Patch {
+
+        // Upper-case key names to their new value, or to null if the key is removed
+        private final Map<String, Object> changes = new LinkedHashMap<String, Object>();
+
+        /**
+         * Construct an empty Patch
+         */
+        public Patch() {
+        }
+
+        /**
+         * @param values - The DataEntry containing the new values of this Patch
+         * @param removedKeys - The keys that this Patch removes
+         */
+        public Patch(DataEntry values, Collection<DataKey> removedKeys) {
+            Validate.notNull(values, "values cannot be null");
+            Validate.notNull(removedKeys, "removedKeys cannot be null");
+            DataSlots slots = values.slots();
+            for (int ordinal = 0; ordinal < slots.length(); ordinal++) {
+                if (slots.type(ordinal) != DataSlots.EMPTY) {
+                    add(DataKey.byOrdinal(ordinal).name(), slots.get(ordinal));
+                }
+            }
+            for (Map.Entry<String, Object> valueEntry : slots.undefined().entrySet()) {
+                add(valueEntry.getKey(), valueEntry.getValue());
+            }
+            for (DataKey key : removedKeys) {
+                add(key.name(), null);
+            }
+        }
+
+        private void add(String name, Object value) {
+            changes.put(name, value);
+        }
+
+        /**
+         * @return a new DataEntry with the new value of each key that this Patch sets
+         */
+        public DataEntry getValues() {
+            DataEntry entry = new DataEntry();
+            for (Map.Entry<String, Object> change : changes.entrySet()) {
+                if (change.getValue() != null) {
+                    entry.values.put(change.getKey(), change.getValue());
+                }
+            }
+            return entry;
+        }
+
+        /**
+         * @return a new Set of the upper-case names of the keys that this Patch removes
+         */
+        public Set<String> getRemovedKeys() {
+            Set<String> removedKeys = new LinkedHashSet<String>();
+            for (Map.Entry<String, Object> change : changes.entrySet()) {
+                if (change.getValue() == null) {
+                    removedKeys.add(change.getKey());
+                }
+            }
+            return removedKeys;
+        }
+
+        /**
+         * @return true if this Patch does not change anything
+         */
+        public boolean isEmpty() {
+            return changes.isEmpty();
+        }
+
+        /**
+         * @return the number of keys that this Patch sets or removes
+         */
+        public int size() {
+            return changes.size();
+        }
+
+        @Override
+        public String toString() {
+            return "Patch{values=" + getValues() + ", removed=" + getRemovedKeys() + "}";
+        }
+
     }
 
 
+    /**
+     * A key of a DataEntry value. Every DataKey is registered in a global registry that assigns each distinct key name
+     * a dense ordinal, which a DataEntry uses to index its values rather than hashing the key name.<br>
+     * Keys should be created with {@link #define(String)} which rejects duplicate definitions of the same key name.
+     * @author Jon
+     */
     public static class DataKey {
 
+        private static final Map<String, DataKey> registry = new ConcurrentHashMap<String, DataKey>();
+        private static volatile DataKey[] keys = new DataKey[0];
+
         private final String key;
+        final int ordinal;
 
-        public DataKey(String name) {
-            if (!KEY_PATTERN.matcher(name).matches()) {
+        /**
+         * Construct a DataKey for the given name. If a key with the same name has already been defined,
+         * the constructed DataKey will share the ordinal of the defined key and will be equal to it.
+         * @param name - The name of the key
+         * @throws IllegalArgumentException if name is not a valid key name
+         * @deprecated use {@link #define(String)} to define a new key, or {@link #get(String)} to get a defined key
+         */
+        @Deprecated
+        public DataKey(String name) throws IllegalArgumentException {
+            this.key = validName(name);
+            this.ordinal = register(key, false).ordinal;
+        }
+
+        private DataKey(String key, int ordinal) {
+            this.key = key;
+            this.ordinal = ordinal;
+        }
+
+        /**
+         * @param name - The name of the key to define
+         * @return the newly defined DataKey for the given name
+         * @throws IllegalArgumentException if name is not a valid key name, or if a key with the same name has already been defined
+         */
+        public static DataKey define(String name) throws IllegalArgumentException {
+            return register(validName(name), true);
+        }
+
+        /**
+         * @param name - The case-insensitive name of the desired key
+         * @return the defined DataKey with the given name, or null if no key with the given name has been defined
+         */
+        public static DataKey get(String name) {
+            Validate.notNull(name, "name cannot be null");
+            return registry.get(name.toUpperCase(Locale.ENGLISH));
+        }
+
+        /**
+         * @return an unmodifiable List of all the defined DataKeys in the order of their ordinals
+         */
+        public static List<DataKey> values() {
+            return Collections.unmodifiableList(Arrays.asList(keys));
+        }
+
+        /**
+         * @param name - The upper-case name of the desired key
+         */
+        static DataKey lookup(String name) {
+            return registry.get(name);
+        }
+
+        static DataKey byOrdinal(int ordinal) {
+            return keys[ordinal];
+        }
+
+        static int count() {
+            return keys.length;
+        }
+
+        private static String validName(String name) {
+            if (name == null || !KEY_PATTERN.matcher(name).matches()) {
                 throw new IllegalArgumentException("Invalid key name syntax.  Key name must match " + KEY_REGEX);
             }
-            this.key = name.toUpperCase();
+            return name.toUpperCase(Locale.ENGLISH);
+        }
+
+        private static synchronized DataKey register(String key, boolean strict) {
+            DataKey defined = registry.get(key);
+            if (defined != null) {
+                if (strict) {
+                    throw new IllegalArgumentException("The DataKey '" + key + "' has already been defined");
+                }
+                return defined;
+            }
+            DataKey[] current = keys;
+            DataKey dataKey = new DataKey(key, current.length);
+            DataKey[] newKeys = Arrays.copyOf(current, current.length + 1);
+            newKeys[dataKey.ordinal] = dataKey;
+            registry.put(key, dataKey);
+            keys = newKeys;
+            return dataKey;
+        }
+
+        /**
+         * @return the dense ordinal that was assigned to the name of this key when it was defined
+         */
+        public final int ordinal() {
+            return ordinal;
         }
 
         protected String name() {
             return key;
         }
 
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof DataKey)) {
+                return false;
+            }
+            return ((DataKey) obj).ordinal == ordinal;
+        }
+
+        @Override
+        public int hashCode() {
+            return ordinal;
+        }
+
         @Override
         public String toString() {
             return name();
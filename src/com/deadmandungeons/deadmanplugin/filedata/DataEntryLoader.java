@@ -0,0 +1,168 @@
+package com.deadmandungeons.deadmanplugin.filedata;
+
+import org.apache.commons.lang.Validate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A bulk loader that decodes a large list of raw DataEntry Strings, such as a String list section of a {@link PluginFile},
+ * in parallel chunks on a {@link ForkJoinPool}.<br>
+ * Decoding only parses the key/value pairs, which does not depend on any Bukkit state. Anything that does, such as
+ * resolving the World of an entry, should be done in {@link Callback#onLoad(int, DataEntry)} which is invoked for each
+ * decoded entry in order on the thread that called {@link #load(List, Callback)} once every entry has been decoded.
+ * The returned list of entries is always in the same order as the raw entries.
+ * @author Jon
+ */
+public final class DataEntryLoader {
+
+    // The amount of entries decoded by a single task. Lists that are not larger than this are decoded on the calling thread
+    private static final int CHUNK_SIZE = 512;
+
+    private static ForkJoinPool pool;
+
+    private DataEntryLoader() {
+    }
+
+    /**
+     * A callback for each loaded entry. Every method is invoked on the thread that called {@link DataEntryLoader#load(List, Callback)}
+     * in the order of the raw entries.
+     * @author Jon
+     */
+    public interface Callback {
+
+        /**
+         * This is where an entry should be validated and anything that depends on Bukkit should be resolved
+         * @param index - The index of the raw entry
+         * @param entry - The decoded DataEntry
+         * @return true if the entry should be included in the loaded entries, or false if it is invalid
+         */
+        boolean onLoad(int index, DataEntry entry);
+
+        /**
+         * @param index - The index of the raw entry
+         * @param rawEntry - The raw entry which was null, not a String, or failed to be decoded. A String fails to be decoded
+         * if it has no key/value pairs, or has input after its last key/value pair
+         * @param cause - The exception that was thrown while decoding the raw entry, or null if the raw entry was not a String
+         */
+        void onInvalid(int index, Object rawEntry, Exception cause);
+
+    }
+
+    /**
+     * Synonymous to {@link #load(List, Callback) load(rawEntries, null)}
+     * @param rawEntries - The raw DataEntry Strings
+     * @return a new List of the decoded DataEntries in the same order as the raw entries, excluding any invalid entries
+     */
+    public static List<DataEntry> load(List<?> rawEntries) {
+        return load(rawEntries, null);
+    }
+
+    /**
+     * Decode the given raw entries on a shared ForkJoinPool with a parallelism equal to the amount of available processors
+     * @param rawEntries - The raw DataEntry Strings
+     * @param callback - The Callback for each loaded or invalid entry, or null
+     * @return a new List of the decoded DataEntries in the same order as the raw entries, excluding any invalid entries
+     */
+    public static List<DataEntry> load(List<?> rawEntries, Callback callback) {
+        return load(rawEntries, callback, (rawEntries.size() > CHUNK_SIZE ? getPool() : null));
+    }
+
+    /**
+     * @param rawEntries - The raw DataEntry Strings
+     * @param callback - The Callback for each loaded or invalid entry, or null
+     * @param pool - The ForkJoinPool to decode the entries on, or null to decode the entries on the calling thread
+     * @return a new List of the decoded DataEntries in the same order as the raw entries, excluding any invalid entries
+     */
+    public static List<DataEntry> load(List<?> rawEntries, Callback callback, ForkJoinPool pool) {
+        Validate.notNull(rawEntries, "rawEntries cannot be null");
+        Object[] raw = rawEntries.toArray();
+        DataEntry[] entries = new DataEntry[raw.length];
+        Exception[] errors = new Exception[raw.length];
+
+        DecodeTask task = new DecodeTask(raw, entries, errors, 0, raw.length);
+        if (pool != null && raw.length > CHUNK_SIZE) {
+            pool.invoke(task);
+        } else {
+            task.decode();
+        }
+
+        // the finishing pass on the calling thread
+        List<DataEntry> loaded = new ArrayList<DataEntry>(entries.length);
+        for (int i = 0; i < entries.length; i++) {
+            DataEntry entry = entries[i];
+            if (entry == null) {
+                if (callback != null) {
+                    callback.onInvalid(i, raw[i], errors[i]);
+                }
+            } else if (callback == null || callback.onLoad(i, entry)) {
+                loaded.add(entry);
+            }
+        }
+        return loaded;
+    }
+
+    private static synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        }
+        return pool;
+    }
+
+    /**
+     * Shut down the shared ForkJoinPool so that its threads do not keep the classes of a disabled plugin loaded.
+     * The next bulk load creates a new pool. This is called when a DeadmanPlugin is disabled.
+     */
+    public static synchronized void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+
+    private static class DecodeTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 5937340523167489734L;
+
+        private final Object[] raw;
+        private final DataEntry[] entries;
+        private final Exception[] errors;
+        private final int start;
+        private final int end;
+
+        private DecodeTask(Object[] raw, DataEntry[] entries, Exception[] errors, int start, int end) {
+            this.raw = raw;
+            this.entries = entries;
+            this.errors = errors;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= CHUNK_SIZE) {
+                decode();
+            } else {
+                int middle = (start + end) >>> 1;
+                invokeAll(new DecodeTask(raw, entries, errors, start, middle), new DecodeTask(raw, entries, errors, middle, end));
+            }
+        }
+
+        private void decode() {
+            for (int i = start; i < end; i++) {
+                Object rawEntry = raw[i];
+                if (rawEntry instanceof String) {
+                    try {
+                        entries[i] = DataEntry.decode((String) rawEntry);
+                    } catch (RuntimeException e) {
+                        errors[i] = e;
+                    }
+                }
+            }
+        }
+    }
+
+}
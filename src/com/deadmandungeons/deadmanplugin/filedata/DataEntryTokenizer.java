@@ -0,0 +1,226 @@
+package com.deadmandungeons.deadmanplugin.filedata;
+
+import java.util.Locale;
+
+/**
+ * A single pass tokenizer for the <code>KEY:value, KEY:value</code> format of a {@link DataEntry}.<br>
+ * This accepts the same key/value pairs as the <code>([a-zA-Z][a-zA-Z0-9$_]*?):([^,]+)</code> pattern
+ * that was previously used to parse entries, but without allocating a Matcher or any intermediate key Strings.
+ * Entries that contain an escaped value start with the {@link #ESCAPED_MARKER}. In such an entry, a value ends at the first
+ * comma that is not escaped by a backslash, and escape sequences are decoded as specified by {@link #unescape(String, int, int)}.
+ * Any other entry is read as it was written before escaping was introduced: a value ends at the first comma and
+ * a backslash is just a backslash.
+ * Parsed keys are returned upper-cased and interned so they can be compared by identity.
+ * @author Jon
+ */
+final class DataEntryTokenizer {
+
+    // The maximum amount of distinct keys that will be cached. Any keys beyond this are simply upper-cased
+    private static final int MAX_CACHED_KEYS = 1024;
+
+    /**
+     * The first character of an entry whose values are escaped
+     */
+    static final char ESCAPED_MARKER = '\\';
+
+    private static volatile String[] keyTable = new String[64];
+    private static int keyCount;
+
+    private final String source;
+    private final boolean escapedValues;
+    private int position;
+    // the end of the last key, including keys without a value, and of the last value
+    private int pairEnd;
+
+    private String key;
+    private String value;
+
+    DataEntryTokenizer(String source) {
+        this.source = source;
+        escapedValues = (!source.isEmpty() && source.charAt(0) == ESCAPED_MARKER);
+        position = (escapedValues ? 1 : 0);
+        pairEnd = position;
+    }
+
+    /**
+     * @return a new tokenizer that continues from the current position of this tokenizer
+     */
+    DataEntryTokenizer copy() {
+        DataEntryTokenizer copy = new DataEntryTokenizer(source);
+        copy.position = position;
+        copy.pairEnd = pairEnd;
+        return copy;
+    }
+
+    /**
+     * Advance to the next key/value pair in the source String
+     * @return true if another key/value pair was found, and false if the end of the source String was reached
+     */
+    boolean next() {
+        String src = source;
+        int length = src.length();
+        int keyStart = -1;
+        int hash = 0;
+        for (int i = position; i < length; i++) {
+            char c = src.charAt(i);
+            if (c == ':') {
+                if (keyStart != -1 && i + 1 < length && src.charAt(i + 1) != ',') {
+                    int valueEnd = i + 1;
+                    boolean escaped = false;
+                    while (valueEnd < length) {
+                        char valueChar = src.charAt(valueEnd);
+                        if (valueChar == ',') {
+                            break;
+                        } else if (valueChar == '\\' && escapedValues && valueEnd + 1 < length) {
+                            escaped = true;
+                            valueEnd++;
+                        }
+                        valueEnd++;
+                    }
+                    key = internKey(src, keyStart, i, hash);
+                    if (ValuePool.isPooled(key)) {
+                        value = (escaped ? ValuePool.intern(unescape(src, i + 1, valueEnd)) : ValuePool.intern(src, i + 1, valueEnd));
+                    } else {
+                        value = (escaped ? unescape(src, i + 1, valueEnd) : src.substring(i + 1, valueEnd));
+                    }
+                    position = valueEnd;
+                    pairEnd = valueEnd;
+                    return true;
+                } else if (keyStart != -1) {
+                    // a key without a value is skipped, but it is not unparsed input
+                    pairEnd = i + 1;
+                }
+                keyStart = -1;
+            } else if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+                if (keyStart == -1) {
+                    keyStart = i;
+                    hash = 0;
+                }
+                hash = 31 * hash + (c & ~0x20);
+            } else if ((c >= '0' && c <= '9') || c == '$' || c == '_') {
+                if (keyStart != -1) {
+                    hash = 31 * hash + c;
+                }
+            } else {
+                keyStart = -1;
+            }
+        }
+        position = length;
+        key = null;
+        value = null;
+        return false;
+    }
+
+    /**
+     * @return the upper-cased and interned key of the current pair
+     */
+    String key() {
+        return key;
+    }
+
+    /**
+     * @return the raw String value of the current pair
+     */
+    String value() {
+        return value;
+    }
+
+    /**
+     * This should only be used once {@link #next()} has returned false
+     * @return the input after the last key/value pair that is not a separator, or null if there is no such input
+     */
+    String trailingInput() {
+        String src = source;
+        for (int i = pairEnd; i < src.length(); i++) {
+            char c = src.charAt(i);
+            if (c != ',' && !Character.isWhitespace(c)) {
+                return src.substring(i);
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * Decode the escape sequences written by {@link DataSlots#writeEscaped(Appendable, CharSequence)}:
+     * <code>\,</code>, <code>\\</code>, <code>\n</code>, and <code>\r</code>.
+     * A backslash followed by any other character is kept as is.
+     */
+    static String unescape(String src, int start, int end) {
+        StringBuilder unescaped = new StringBuilder(end - start);
+        int runStart = start;
+        for (int i = start; i < end - 1; i++) {
+            if (src.charAt(i) == '\\') {
+                char escapedChar = src.charAt(i + 1);
+                char decoded;
+                if (escapedChar == ',' || escapedChar == '\\') {
+                    decoded = escapedChar;
+                } else if (escapedChar == 'n') {
+                    decoded = '\n';
+                } else if (escapedChar == 'r') {
+                    decoded = '\r';
+                } else {
+                    continue;
+                }
+                unescaped.append(src, runStart, i).append(decoded);
+                runStart = i + 2;
+                i++;
+            }
+        }
+        return unescaped.append(src, runStart, end).toString();
+    }
+
+    private static String internKey(String src, int start, int end, int hash) {
+        String[] table = keyTable;
+        int mask = table.length - 1;
+        int length = end - start;
+        for (int i = spread(hash) & mask; table[i] != null; i = (i + 1) & mask) {
+            String key = table[i];
+            if (key.length() == length && key.regionMatches(true, 0, src, start, length)) {
+                return key;
+            }
+        }
+        return addKey(src.substring(start, end).toUpperCase(Locale.ENGLISH));
+    }
+
+    private static synchronized String addKey(String key) {
+        String[] table = keyTable;
+        // check again in case the key was added by another thread
+        int mask = table.length - 1;
+        for (int i = spread(key.hashCode()) & mask; table[i] != null; i = (i + 1) & mask) {
+            if (table[i].equals(key)) {
+                return table[i];
+            }
+        }
+        if (keyCount >= MAX_CACHED_KEYS) {
+            return key;
+        }
+
+        key = key.intern();
+        // copy on write so that readers never need to synchronize. The table is kept at most half full
+        String[] newTable = new String[(keyCount + 1) * 2 > table.length ? table.length * 2 : table.length];
+        for (String existing : table) {
+            if (existing != null) {
+                insert(newTable, existing);
+            }
+        }
+        insert(newTable, key);
+        keyCount++;
+        keyTable = newTable;
+        return key;
+    }
+
+    private static void insert(String[] table, String key) {
+        int mask = table.length - 1;
+        int i = spread(key.hashCode()) & mask;
+        while (table[i] != null) {
+            i = (i + 1) & mask;
+        }
+        table[i] = key;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+}
@@ -0,0 +1,527 @@
+package com.deadmandungeons.deadmanplugin.filedata;
+
+import com.deadmandungeons.deadmanplugin.NumberParser;
+import com.deadmandungeons.deadmanplugin.filedata.DataEntry.DataKey;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The value storage of a {@link DataEntry}.<br>
+ * Values are kept in slots indexed by the {@link DataKey#ordinal() ordinal} of their key. Number values are
+ * stored unboxed in a long slot along with a tag of their original boxed type, so that {@link #get(DataKey)}
+ * returns an equal value of the same type that was set. Parsed values of key names that have not been defined
+ * as a DataKey fall back to a map.
+ * @author Jon
+ */
+final class DataSlots {
+
+    static final byte EMPTY = 0;
+    static final byte OBJECT = 1;
+    static final byte BYTE = 2;
+    static final byte SHORT = 3;
+    static final byte INT = 4;
+    static final byte LONG = 5;
+    static final byte FLOAT = 6;
+    static final byte DOUBLE = 7;
+
+    private static final byte[] NO_TYPES = new byte[0];
+
+    private byte[] types = NO_TYPES;
+    // lazily allocated since most entries only contain one kind of value
+    private long[] primitives;
+    private Object[] objects;
+    private Map<String, Object> undefined;
+
+
+    Object get(DataKey key) {
+        int ordinal = key.ordinal;
+        if (ordinal < types.length && types[ordinal] != EMPTY) {
+            return get(ordinal);
+        }
+        return (undefined != null ? undefined.get(key.name()) : null);
+    }
+
+    Object get(int ordinal) {
+        byte type = types[ordinal];
+        if (type == OBJECT) {
+            return objects[ordinal];
+        }
+        return (type != EMPTY ? box(type, primitives[ordinal]) : null);
+    }
+
+    /**
+     * @param type - A number type tag
+     * @param bits - The value as a long, or the raw long bits of a float or double value
+     * @return the boxed number of the given type
+     */
+    static Number box(byte type, long bits) {
+        switch (type) {
+            case BYTE:
+                return (byte) bits;
+            case SHORT:
+                return (short) bits;
+            case INT:
+                return (int) bits;
+            case FLOAT:
+                return (float) Double.longBitsToDouble(bits);
+            case DOUBLE:
+                return Double.longBitsToDouble(bits);
+            default:
+                return bits;
+        }
+    }
+
+    /**
+     * @param ordinal - The ordinal of a DataKey
+     * @return the type tag of the value in the given slot
+     */
+    byte type(int ordinal) {
+        return (ordinal < types.length ? types[ordinal] : EMPTY);
+    }
+
+    /**
+     * Set the given value, or remove the current value if value is null
+     * @param name - The upper-case name of the key
+     * @param value - The value to set
+     */
+    void put(String name, Object value) {
+        DataKey key = DataKey.lookup(name);
+        if (key != null) {
+            put(key, value);
+        } else if (value != null) {
+            (undefined == null ? undefined = new HashMap<String, Object>() : undefined).put(name, value);
+        } else if (undefined != null) {
+            undefined.remove(name);
+        }
+    }
+
+    void put(DataKey key, Object value) {
+        if (undefined != null) {
+            // the key may have been defined after a value for it was parsed
+            undefined.remove(key.name());
+        }
+        set(key.ordinal, value);
+    }
+
+    private void set(int ordinal, Object value) {
+        if (value instanceof Number) {
+            if (value instanceof Integer) {
+                setPrimitive(ordinal, INT, (Integer) value);
+                return;
+            } else if (value instanceof Long) {
+                setPrimitive(ordinal, LONG, (Long) value);
+                return;
+            } else if (value instanceof Double) {
+                setPrimitive(ordinal, DOUBLE, Double.doubleToRawLongBits((Double) value));
+                return;
+            } else if (value instanceof Float) {
+                setPrimitive(ordinal, FLOAT, Double.doubleToRawLongBits((Float) value));
+                return;
+            } else if (value instanceof Byte) {
+                setPrimitive(ordinal, BYTE, (Byte) value);
+                return;
+            } else if (value instanceof Short) {
+                setPrimitive(ordinal, SHORT, (Short) value);
+                return;
+            }
+        }
+        if (value != null) {
+            ensureCapacity(ordinal);
+            if (objects == null) {
+                objects = new Object[types.length];
+            }
+            objects[ordinal] = value;
+            types[ordinal] = OBJECT;
+        } else if (ordinal < types.length) {
+            clear(ordinal);
+        }
+    }
+
+    /**
+     * Numbers in primitive slots are compared by their type and value without boxing them, and any other value is compared
+     * with {@link Object#equals(Object)}. A value of a different type, such as a number and the String it was parsed from,
+     * is never considered the same.
+     * @param key - The key of the value
+     * @param value - The value to compare the current value to, or null
+     * @return true if the current value of the given key is certainly the same as the given value
+     */
+    boolean holds(DataKey key, Object value) {
+        int ordinal = key.ordinal;
+        byte type = type(ordinal);
+        if (type == EMPTY) {
+            Object current = (undefined != null ? undefined.get(key.name()) : null);
+            return (value == null ? current == null : value.equals(current));
+        } else if (type == OBJECT) {
+            return objects[ordinal].equals(value);
+        } else if (numberType(value) != type) {
+            return false;
+        } else if (type == FLOAT || type == DOUBLE) {
+            // compared like Double#equals, which is also how Float#equals compares the widened value
+            return Double.doubleToLongBits(Double.longBitsToDouble(primitives[ordinal])) == Double.doubleToLongBits(((Number) value).doubleValue());
+        }
+        return primitives[ordinal] == ((Number) value).longValue();
+    }
+
+    private static byte numberType(Object value) {
+        if (value instanceof Integer) {
+            return INT;
+        } else if (value instanceof Long) {
+            return LONG;
+        } else if (value instanceof Double) {
+            return DOUBLE;
+        } else if (value instanceof Float) {
+            return FLOAT;
+        } else if (value instanceof Byte) {
+            return BYTE;
+        } else if (value instanceof Short) {
+            return SHORT;
+        }
+        return OBJECT;
+    }
+
+    /**
+     * Set the number that was last parsed by the given parser without boxing it
+     * @param key - The key of the number
+     * @param parser - The parser that successfully parsed the number
+     */
+    void put(DataKey key, NumberParser parser) {
+        if (!parser.isPrimitive()) {
+            put(key, parser.toNumber());
+            return;
+        }
+        if (undefined != null) {
+            undefined.remove(key.name());
+        }
+        if (parser.isDecimal()) {
+            setDouble(key.ordinal, parser.doubleValue());
+        } else {
+            // tagged the same as the boxed type of NumberParser.toNumber()
+            long value = parser.longValue();
+            setPrimitive(key.ordinal, (value == (int) value ? INT : LONG), value);
+        }
+    }
+
+    /**
+     * Store every String value that is a number into a primitive slot if the number is formatted back to exactly the same String.
+     * This does not change the formatted String of these slots.
+     */
+    void compactNumbers() {
+        NumberParser parser = null;
+        for (int ordinal = 0; ordinal < types.length; ordinal++) {
+            if (types[ordinal] == OBJECT && objects[ordinal] instanceof String) {
+                String value = (String) objects[ordinal];
+                if (parser == null) {
+                    parser = new NumberParser();
+                }
+                if (parser.parse(value) && parser.isPrimitive()) {
+                    if (parser.isDecimal()) {
+                        if (Double.toString(parser.doubleValue()).equals(value)) {
+                            setDouble(ordinal, parser.doubleValue());
+                        }
+                    } else if (Long.toString(parser.longValue()).equals(value)) {
+                        long number = parser.longValue();
+                        setPrimitive(ordinal, (number == (int) number ? INT : LONG), number);
+                    }
+                }
+            }
+        }
+    }
+
+    void setLong(int ordinal, long value) {
+        setPrimitive(ordinal, LONG, value);
+    }
+
+    void setDouble(int ordinal, double value) {
+        setPrimitive(ordinal, DOUBLE, Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * @param ordinal - The ordinal of a DataKey
+     * @param type - The number type tag of the value
+     * @param bits - The value as a long, or the raw long bits of a float or double value
+     */
+    void setPrimitive(int ordinal, byte type, long bits) {
+        ensureCapacity(ordinal);
+        if (primitives == null) {
+            primitives = new long[types.length];
+        }
+        if (types[ordinal] == OBJECT) {
+            objects[ordinal] = null;
+        }
+        primitives[ordinal] = bits;
+        types[ordinal] = type;
+    }
+
+    private void clear(int ordinal) {
+        if (types[ordinal] == OBJECT) {
+            objects[ordinal] = null;
+        }
+        types[ordinal] = EMPTY;
+    }
+
+    private void ensureCapacity(int ordinal) {
+        if (ordinal >= types.length) {
+            // size to all currently defined keys so that the slots rarely need to grow more than once
+            int length = Math.max(ordinal + 1, DataKey.count());
+            types = Arrays.copyOf(types, length);
+            if (primitives != null) {
+                primitives = Arrays.copyOf(primitives, length);
+            }
+            if (objects != null) {
+                objects = Arrays.copyOf(objects, length);
+            }
+        }
+    }
+
+    /**
+     * @param ordinal - The ordinal of a DataKey
+     * @return the value in the given slot as a long. The slot must hold a number value
+     */
+    long getLong(int ordinal) {
+        byte type = types[ordinal];
+        return (type == FLOAT || type == DOUBLE ? (long) Double.longBitsToDouble(primitives[ordinal]) : primitives[ordinal]);
+    }
+
+    /**
+     * @param ordinal - The ordinal of a DataKey
+     * @return the value in the given slot as a double. The slot must hold a number value
+     */
+    double getDouble(int ordinal) {
+        byte type = types[ordinal];
+        return (type == FLOAT || type == DOUBLE ? Double.longBitsToDouble(primitives[ordinal]) : primitives[ordinal]);
+    }
+
+    /**
+     * @param ordinal - The ordinal of a DataKey
+     * @return the raw long value in the given slot, which is the double bits of a float or double value
+     */
+    long bits(int ordinal) {
+        return primitives[ordinal];
+    }
+
+    /**
+     * @return the number of slots, which is greater than the ordinal of every key that has a value
+     */
+    int length() {
+        return types.length;
+    }
+
+    /**
+     * @return the values of parsed key names that have not been defined as a DataKey
+     */
+    Map<String, Object> undefined() {
+        return (undefined != null ? undefined : Collections.<String, Object>emptyMap());
+    }
+
+    static boolean isNumber(byte type) {
+        return type >= BYTE;
+    }
+
+
+    /**
+     * Create a structural copy of these slots. Immutable values are shared with the copy, and any other value
+     * is copied as its String representation which is exactly what a serialized and re-parsed copy would have.
+     * @return a new DataSlots instance with the same values as these slots
+     */
+    DataSlots copy() {
+        DataSlots copy = new DataSlots();
+        copy.types = (types.length > 0 ? types.clone() : NO_TYPES);
+        if (primitives != null) {
+            copy.primitives = primitives.clone();
+        }
+        if (objects != null) {
+            Object[] copiedObjects = new Object[objects.length];
+            for (int ordinal = 0; ordinal < objects.length; ordinal++) {
+                copiedObjects[ordinal] = copyOf(objects[ordinal]);
+            }
+            copy.objects = copiedObjects;
+        }
+        if (undefined != null) {
+            copy.undefined = new HashMap<String, Object>(undefined.size() * 2);
+            for (Map.Entry<String, Object> valueEntry : undefined.entrySet()) {
+                copy.undefined.put(valueEntry.getKey(), copyOf(valueEntry.getValue()));
+            }
+        }
+        return copy;
+    }
+
+    private static Object copyOf(Object value) {
+        if (value == null || value instanceof String || value instanceof Enum || value instanceof UUID || value instanceof Boolean
+                || value instanceof Character || value instanceof BigInteger || value instanceof BigDecimal) {
+            return value;
+        }
+        // Numbers of the primitive wrapper types are never stored as objects
+        return value.toString();
+    }
+
+
+    /**
+     * @return an estimate of the length of these slots formatted as specified by {@link DataEntry#toString()}
+     */
+    int estimateLength() {
+        int length = 0;
+        for (int ordinal = 0; ordinal < types.length; ordinal++) {
+            byte type = types[ordinal];
+            if (type != EMPTY) {
+                length += DataKey.byOrdinal(ordinal).name().length() + 3;
+                switch (type) {
+                    case OBJECT:
+                        Object value = objects[ordinal];
+                        length += (value instanceof CharSequence ? ((CharSequence) value).length() : 16);
+                        break;
+                    case FLOAT:
+                    case DOUBLE:
+                        length += 12;
+                        break;
+                    default:
+                        length += 6;
+                        break;
+                }
+            }
+        }
+        if (undefined != null) {
+            length += undefined.size() * 16;
+        }
+        return length;
+    }
+
+    /**
+     * Write each key/value pair as specified by {@link DataEntry#toString()}.
+     * The pairs are preceded by the {@link DataEntryTokenizer#ESCAPED_MARKER} if any value needs to be escaped.
+     * @param out - The Appendable to write to
+     * @throws IOException if out throws an IOException
+     */
+    void writeTo(Appendable out) throws IOException {
+        if (hasEscapedValue()) {
+            out.append(DataEntryTokenizer.ESCAPED_MARKER);
+        }
+        boolean first = true;
+        for (int ordinal = 0; ordinal < types.length; ordinal++) {
+            byte type = types[ordinal];
+            if (type != EMPTY) {
+                first = writeKey(out, DataKey.byOrdinal(ordinal).name(), first);
+                switch (type) {
+                    case OBJECT:
+                        writeValue(out, objects[ordinal]);
+                        break;
+                    case FLOAT:
+                        float floatValue = (float) Double.longBitsToDouble(primitives[ordinal]);
+                        if (out instanceof StringBuilder) {
+                            ((StringBuilder) out).append(floatValue);
+                        } else {
+                            out.append(Float.toString(floatValue));
+                        }
+                        break;
+                    case DOUBLE:
+                        double doubleValue = Double.longBitsToDouble(primitives[ordinal]);
+                        if (out instanceof StringBuilder) {
+                            ((StringBuilder) out).append(doubleValue);
+                        } else {
+                            out.append(Double.toString(doubleValue));
+                        }
+                        break;
+                    default:
+                        if (out instanceof StringBuilder) {
+                            ((StringBuilder) out).append(primitives[ordinal]);
+                        } else {
+                            out.append(Long.toString(primitives[ordinal]));
+                        }
+                        break;
+                }
+            }
+        }
+        if (undefined != null) {
+            for (Map.Entry<String, Object> valueEntry : undefined.entrySet()) {
+                first = writeKey(out, valueEntry.getKey(), first);
+                writeValue(out, valueEntry.getValue());
+            }
+        }
+    }
+
+    private boolean hasEscapedValue() {
+        for (int ordinal = 0; ordinal < types.length; ordinal++) {
+            if (types[ordinal] == OBJECT && needsEscaping(objects[ordinal])) {
+                return true;
+            }
+        }
+        if (undefined != null) {
+            for (Object value : undefined.values()) {
+                if (needsEscaping(value)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean writeKey(Appendable out, String key, boolean first) throws IOException {
+        if (!first) {
+            out.append(", ");
+        }
+        out.append(key).append(':');
+        return false;
+    }
+
+    private static void writeValue(Appendable out, Object value) throws IOException {
+        writeEscaped(out, (value instanceof CharSequence ? (CharSequence) value : value.toString()));
+    }
+
+    /**
+     * @param value - The value to check
+     * @return true if the String representation of the given value has a character that is escaped by
+     * {@link #writeEscaped(Appendable, CharSequence)}
+     */
+    static boolean needsEscaping(Object value) {
+        CharSequence chars = (value instanceof CharSequence ? (CharSequence) value : value.toString());
+        for (int i = 0; i < chars.length(); i++) {
+            char c = chars.charAt(i);
+            if (c == ',' || c == '\\' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Append the given value with every comma, backslash, line feed and carriage return escaped by a backslash,
+     * so that it is decoded back to the same value by the {@link DataEntryTokenizer}.
+     * The entry that the value is written in must start with the {@link DataEntryTokenizer#ESCAPED_MARKER}
+     * if {@link #needsEscaping(Object)} is true for the value.
+     * Unescaped runs of the value are appended in bulk.
+     * @param out - The Appendable to write to
+     * @param value - The value to escape
+     * @throws IOException if out throws an IOException
+     */
+    static void writeEscaped(Appendable out, CharSequence value) throws IOException {
+        int length = value.length();
+        int runStart = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            char escaped;
+            if (c == ',' || c == '\\') {
+                escaped = c;
+            } else if (c == '\n') {
+                escaped = 'n';
+            } else if (c == '\r') {
+                escaped = 'r';
+            } else {
+                continue;
+            }
+            out.append(value, runStart, i).append('\\').append(escaped);
+            runStart = i + 1;
+        }
+        if (runStart == 0) {
+            out.append(value);
+        } else {
+            out.append(value, runStart, length);
+        }
+    }
+
+}
@@ -0,0 +1,160 @@
+package com.deadmandungeons.deadmanplugin.filedata;
+
+import com.deadmandungeons.deadmanplugin.DeadmanPlugin;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Watches the directories of the hot reloaded {@link PluginFile}s of a DeadmanPlugin with a {@link WatchService}.<br>
+ * A single daemon thread per plugin waits for the modification events of the watched files. Editors and file transfers
+ * usually modify a file several times in a row, so a PluginFile is only reloaded once no more events have been received
+ * for it for {@link #DEBOUNCE_MILLIS}. The reload is started on the watcher thread as specified by {@link PluginFile#reloadModified()}.
+ * @author Jon
+ */
+final class FileWatcher implements Runnable {
+
+    static final long DEBOUNCE_MILLIS = 500;
+
+    private static final Map<DeadmanPlugin, FileWatcher> watchers = new HashMap<DeadmanPlugin, FileWatcher>();
+
+    private final DeadmanPlugin plugin;
+    private final WatchService watchService;
+    private final Set<Path> directories = new HashSet<Path>();
+    private final Map<Path, PluginFile> files = new HashMap<Path, PluginFile>();
+    // only accessed on the watcher thread
+    private final Map<PluginFile, Long> pending = new LinkedHashMap<PluginFile, Long>();
+
+    private FileWatcher(DeadmanPlugin plugin) throws IOException {
+        this.plugin = plugin;
+        this.watchService = FileSystems.getDefault().newWatchService();
+    }
+
+    /**
+     * Start watching the file of the given PluginFile, starting the watcher thread of its plugin if needed
+     * @param plugin - The plugin that the PluginFile belongs to
+     * @param pluginFile - The PluginFile to watch
+     * @throws IOException if the directory of the PluginFile could not be watched
+     */
+    static void watch(DeadmanPlugin plugin, PluginFile pluginFile) throws IOException {
+        FileWatcher watcher;
+        synchronized (watchers) {
+            watcher = watchers.get(plugin);
+            if (watcher == null) {
+                watcher = new FileWatcher(plugin);
+                Thread thread = new Thread(watcher, plugin.getName() + " PluginFile Watcher");
+                thread.setDaemon(true);
+                thread.start();
+                watchers.put(plugin, watcher);
+            }
+        }
+        watcher.register(pluginFile.getFile().toPath().toAbsolutePath().normalize(), pluginFile);
+    }
+
+    /**
+     * Stop watching the PluginFiles of the given plugin and stop its watcher thread
+     * @param plugin - The plugin to stop watching the PluginFiles of
+     */
+    static void close(DeadmanPlugin plugin) {
+        FileWatcher watcher;
+        synchronized (watchers) {
+            watcher = watchers.remove(plugin);
+        }
+        if (watcher != null) {
+            try {
+                // the watcher thread stops with a ClosedWatchServiceException
+                watcher.watchService.close();
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.WARNING, "Could not close PluginFile watcher", e);
+            }
+        }
+    }
+
+    private synchronized void register(Path path, PluginFile pluginFile) throws IOException {
+        Path directory = path.getParent();
+        if (directories.add(directory)) {
+            // a file that is saved by renaming a new file over it, which is how PluginFiles are saved, is created rather than modified
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        }
+        files.put(path, pluginFile);
+    }
+
+    private synchronized PluginFile getPluginFile(Path path) {
+        return files.get(path);
+    }
+
+    private synchronized void addAll(Path directory, long deadline) {
+        for (Map.Entry<Path, PluginFile> entry : files.entrySet()) {
+            if (entry.getKey().getParent().equals(directory)) {
+                pending.remove(entry.getValue());
+                pending.put(entry.getValue(), deadline);
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                WatchKey key;
+                if (pending.isEmpty()) {
+                    key = watchService.take();
+                } else {
+                    long wait = Math.max(0, pending.values().iterator().next() - System.currentTimeMillis());
+                    key = watchService.poll(wait, TimeUnit.MILLISECONDS);
+                }
+
+                if (key != null) {
+                    Path directory = (Path) key.watchable();
+                    long deadline = System.currentTimeMillis() + DEBOUNCE_MILLIS;
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            // events were lost so any file in the directory may have been modified
+                            addAll(directory, deadline);
+                            continue;
+                        }
+                        PluginFile pluginFile = getPluginFile(directory.resolve((Path) event.context()));
+                        if (pluginFile != null) {
+                            // move the file to the end so that the pending files stay ordered by their deadline
+                            pending.remove(pluginFile);
+                            pending.put(pluginFile, deadline);
+                        }
+                    }
+                    key.reset();
+                }
+
+                long now = System.currentTimeMillis();
+                Iterator<Map.Entry<PluginFile, Long>> iterator = pending.entrySet().iterator();
+                while (iterator.hasNext()) {
+                    Map.Entry<PluginFile, Long> entry = iterator.next();
+                    if (entry.getValue() > now) {
+                        break;
+                    }
+                    iterator.remove();
+                    try {
+                        entry.getKey().reloadModified();
+                    } catch (RuntimeException e) {
+                        plugin.getLogger().log(Level.SEVERE, "Failed to reload modified " + entry.getKey().getFile(), e);
+                    }
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // the plugin was disabled
+        }
+    }
+
+}
@@ -0,0 +1,341 @@
+package com.deadmandungeons.deadmanplugin.filedata;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only write-ahead log of the values set in a journaled {@link PluginFile}.<br>
+ * Each value set with {@link PluginFile#set(String, Object)} is recorded, and the records are appended to the journal file
+ * when the PluginFile saves its changes, so the cost of a save depends on the size of the changes rather than the size of the file.
+ * When the PluginFile is loaded, the records in the journal are replayed over the loaded file. The journal is compacted
+ * by saving the whole PluginFile, after which the journal is rebased to only contain the records that were made after the
+ * saved snapshot was taken.<br>
+ * The journal file starts with the CRC-32 of the file that it is based on. A rebased journal is written to a separate file
+ * before the snapshot is renamed over the PluginFile's file, and it is only renamed over the journal file afterwards.
+ * If a crash happens in between, the rebased journal is used if its CRC matches the PluginFile's file.
+ * <pre>
+ * journal: 'D' 'M' 'J' 'L' version:u8 snapshotCrc:i64 record*
+ * record:  length:i32 crc:i32 sequence:i64 path:utf hasValue:bool (valueLength:i32 value:utf8-yaml)?
+ * </pre>
+ * Every method other than {@link #record(String, Object)}, {@link #hasPending()}, {@link #mark()}, and {@link #clearPending()}
+ * must be called while holding the save lock of the PluginFile.
+ * @author Jon
+ */
+final class Journal {
+
+    private static final int MAGIC = ('D' << 24) | ('M' << 16) | ('J' << 8) | 'L';
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 1 + 8;
+    private static final String VALUE_KEY = "value";
+
+    private final File file;
+    private final File rebaseFile;
+
+    // only accessed on the main thread
+    private final List<byte[]> pending = new ArrayList<byte[]>();
+    private long nextSequence = 1;
+
+    private long length;
+    private long rebaseLength;
+
+    /**
+     * @param dataFile - The file of the PluginFile that this journal is for
+     */
+    Journal(File dataFile) {
+        file = new File(dataFile.getParentFile(), dataFile.getName() + ".journal");
+        rebaseFile = new File(dataFile.getParentFile(), dataFile.getName() + ".journal.new");
+    }
+
+    /**
+     * Record a value that was set in the PluginFile, to be appended to the journal with the next call to {@link #append()}
+     * @param path - The path of the value
+     * @param value - The value that was set, or null if the value was removed
+     */
+    void record(String path, Object value) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream data = new DataOutputStream(bytes);
+            data.writeLong(nextSequence++);
+            data.writeUTF(path);
+            data.writeBoolean(value != null);
+            if (value != null) {
+                YamlConfiguration yaml = new YamlConfiguration();
+                yaml.set(VALUE_KEY, value);
+                byte[] valueBytes = yaml.saveToString().getBytes(StandardCharsets.UTF_8);
+                data.writeInt(valueBytes.length);
+                data.write(valueBytes);
+            }
+            pending.add(bytes.toByteArray());
+        } catch (IOException e) {
+            // This shouldn't happen because a ByteArrayOutputStream does not throw an IOException
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return true if there are recorded values that have not been appended to the journal file yet
+     */
+    boolean hasPending() {
+        return !pending.isEmpty();
+    }
+
+    /**
+     * Discard the recorded values that have not been appended to the journal file yet
+     */
+    void clearPending() {
+        pending.clear();
+    }
+
+    /**
+     * This is called when a snapshot of the PluginFile is taken. The pending values are discarded because they are
+     * included in the snapshot.
+     * @return the sequence number of the last record that is included in the snapshot
+     */
+    long mark() {
+        pending.clear();
+        return nextSequence - 1;
+    }
+
+    /**
+     * @return the length of the journal file in bytes
+     */
+    long length() {
+        return length;
+    }
+
+    /**
+     * @return true if the journal file does not contain any records
+     */
+    boolean isEmpty() {
+        return length <= HEADER_SIZE;
+    }
+
+    /**
+     * Append the pending records to the journal file and flush them to the storage device
+     * @throws IOException if the records could not be appended, in which case they remain pending
+     */
+    void append() throws IOException {
+        if (pending.isEmpty()) {
+            return;
+        }
+        long start = length;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            if (length == 0) {
+                // the journal file was deleted, so it is not based on a known snapshot
+                writeFully(channel, header(0));
+                length = HEADER_SIZE;
+            }
+            // drop a partially written record from a failed append
+            channel.truncate(length);
+            channel.position(length);
+            for (byte[] record : pending) {
+                length += writeRecord(channel, record);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            length = start;
+            throw e;
+        }
+        pending.clear();
+    }
+
+    /**
+     * Write the rebased journal for a snapshot to a separate file. The journal is not modified until {@link #commitRebase()} is called.
+     * @param snapshotCrc - The CRC-32 of the snapshot
+     * @param mark - The sequence number of the last record that is included in the snapshot as returned by {@link #mark()}
+     * @throws IOException if the rebased journal could not be written
+     */
+    void prepareRebase(long snapshotCrc, long mark) throws IOException {
+        List<byte[]> records = new ArrayList<byte[]>();
+        if (file.exists()) {
+            readRecords(Files.readAllBytes(file.toPath()), records);
+        }
+        try (FileChannel channel = FileChannel.open(rebaseFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, header(snapshotCrc));
+            rebaseLength = HEADER_SIZE;
+            for (byte[] record : records) {
+                if (ByteBuffer.wrap(record).getLong() > mark) {
+                    rebaseLength += writeRecord(channel, record);
+                }
+            }
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Atomically replace the journal with the rebased journal written by {@link #prepareRebase(long, long)}
+     * @throws IOException if the rebased journal could not be renamed
+     */
+    void commitRebase() throws IOException {
+        move(rebaseFile, file);
+        length = rebaseLength;
+        AtomicFile.syncDirectory(file.getAbsoluteFile().getParentFile());
+    }
+
+    /**
+     * Delete the rebased journal written by {@link #prepareRebase(long, long)} after the snapshot failed to be saved
+     */
+    void abortRebase() {
+        rebaseFile.delete();
+    }
+
+    /**
+     * Delete the journal file and any rebased journal file
+     */
+    void delete() {
+        pending.clear();
+        rebaseFile.delete();
+        file.delete();
+        length = 0;
+    }
+
+    /**
+     * Replay the records in the journal over the given loaded PluginFile configuration.
+     * @param config - The configuration that was loaded from the PluginFile's file
+     * @param snapshotCrc - The CRC-32 of the PluginFile's file
+     * @return the amount of records that were replayed. If this is greater than 0, the PluginFile should be saved
+     * in order to compact the journal
+     * @throws IOException if the journal could not be read
+     */
+    int recover(ConfigurationSection config, long snapshotCrc) throws IOException {
+        pending.clear();
+        if (rebaseFile.exists()) {
+            byte[] rebased = Files.readAllBytes(rebaseFile.toPath());
+            if (rebased.length >= HEADER_SIZE && ByteBuffer.wrap(rebased).getLong(5) == snapshotCrc) {
+                // the snapshot was saved but the journal was not replaced with the rebased journal
+                move(rebaseFile, file);
+            } else {
+                // the snapshot was not saved so the rebased journal is not valid
+                rebaseFile.delete();
+            }
+        }
+
+        List<byte[]> records = new ArrayList<byte[]>();
+        long validLength = 0;
+        if (file.exists()) {
+            // a journal that is based on a different snapshot, for example because the file was edited by hand,
+            // is still replayed because its records are newer than the file
+            validLength = readRecords(Files.readAllBytes(file.toPath()), records);
+        }
+        if (records.isEmpty()) {
+            reset(snapshotCrc);
+            return 0;
+        }
+
+        for (byte[] record : records) {
+            DataInputStream data = new DataInputStream(new ByteArrayInputStream(record));
+            long sequence = data.readLong();
+            String path = data.readUTF();
+            Object value = null;
+            if (data.readBoolean()) {
+                byte[] valueBytes = new byte[data.readInt()];
+                data.readFully(valueBytes);
+                YamlConfiguration yaml = new YamlConfiguration();
+                try {
+                    yaml.loadFromString(new String(valueBytes, StandardCharsets.UTF_8));
+                } catch (InvalidConfigurationException e) {
+                    throw new IOException("Invalid value in journal record " + sequence, e);
+                }
+                value = yaml.get(VALUE_KEY);
+            }
+            config.set(path, value);
+            nextSequence = Math.max(nextSequence, sequence + 1);
+        }
+        length = validLength;
+        return records.size();
+    }
+
+    private void reset(long snapshotCrc) throws IOException {
+        try (FileChannel channel = FileChannel.open(rebaseFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, header(snapshotCrc));
+            channel.force(false);
+        }
+        move(rebaseFile, file);
+        length = HEADER_SIZE;
+    }
+
+    /**
+     * Read the valid records of a journal. Reading stops at the first record that is incomplete or fails its CRC check,
+     * which is a record that was being appended when the server crashed.
+     * @return the length of the valid part of the journal, or 0 if the journal does not have a valid header
+     */
+    private static long readRecords(byte[] journal, List<byte[]> records) {
+        ByteBuffer buffer = ByteBuffer.wrap(journal);
+        if (journal.length < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.get() != VERSION) {
+            return 0;
+        }
+        buffer.getLong();
+        int validLength = HEADER_SIZE;
+        CRC32 crc = new CRC32();
+        while (buffer.remaining() >= 8) {
+            int recordLength = buffer.getInt();
+            int recordCrc = buffer.getInt();
+            if (recordLength <= 0 || recordLength > buffer.remaining()) {
+                break;
+            }
+            crc.reset();
+            crc.update(journal, buffer.position(), recordLength);
+            if ((int) crc.getValue() != recordCrc) {
+                break;
+            }
+            byte[] record = new byte[recordLength];
+            buffer.get(record);
+            records.add(record);
+            validLength = buffer.position();
+        }
+        return validLength;
+    }
+
+    private static ByteBuffer header(long snapshotCrc) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).put((byte) VERSION).putLong(snapshotCrc);
+        ((Buffer) header).flip();
+        return header;
+    }
+
+    private static int writeRecord(FileChannel channel, byte[] record) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(record, 0, record.length);
+        ByteBuffer buffer = ByteBuffer.allocate(8 + record.length);
+        buffer.putInt(record.length).putInt((int) crc.getValue()).put(record);
+        ((Buffer) buffer).flip();
+        writeFully(channel, buffer);
+        return 8 + record.length;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void move(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+}
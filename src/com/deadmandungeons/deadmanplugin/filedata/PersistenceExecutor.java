@@ -0,0 +1,222 @@
+package com.deadmandungeons.deadmanplugin.filedata;
+
+import com.deadmandungeons.deadmanplugin.DeadmanPlugin;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * The persistence executor that is shared by the {@link PluginFile}s of every DeadmanPlugin.<br>
+ * Auto-saved PluginFiles are queued when they have unsaved changes rather than each running their own timer.
+ * A single timer task per plugin checks the queue every second and saves the queued files whose auto-save period has passed,
+ * so a file that is queued any number of times within its period is only saved once. The snapshots of asynchronous saves
+ * are written by a bounded pool of {@link #MAX_WRITERS} daemon threads, so the saves of many files do not compete for the disk.
+ * When a plugin is disabled, its queued files are saved and its pending writes are waited for, for up to {@link #FLUSH_TIMEOUT_MILLIS}.
+ * Any write that is submitted for a plugin after it was flushed is run on the calling thread, so that it is not lost.
+ * @author Jon
+ */
+final class PersistenceExecutor {
+
+    static final int MAX_WRITERS = 2;
+    static final long FLUSH_TIMEOUT_MILLIS = 10000;
+
+    private static final int CHECK_PERIOD = 20; // ticks
+
+    private static final Map<DeadmanPlugin, PluginQueue> queues = new HashMap<DeadmanPlugin, PluginQueue>();
+    // the plugins that have been flushed since they were last registered. Weak so that a disabled plugin can be unloaded
+    private static final Set<DeadmanPlugin> flushed = Collections.newSetFromMap(new WeakHashMap<DeadmanPlugin, Boolean>());
+    private static final ThreadPoolExecutor writers;
+
+    static {
+        writers = new ThreadPoolExecutor(MAX_WRITERS, MAX_WRITERS, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "DeadmanPlugin Persistence Writer #" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        writers.allowCoreThreadTimeOut(true);
+    }
+
+    private PersistenceExecutor() {
+    }
+
+    /**
+     * Start the auto-save timer of the given plugin if it has not been started yet
+     * @param plugin - The plugin of an auto-saved PluginFile
+     */
+    static void register(DeadmanPlugin plugin) {
+        synchronized (queues) {
+            flushed.remove(plugin);
+            PluginQueue queue = queues.get(plugin);
+            if (queue == null) {
+                queue = new PluginQueue(plugin);
+                queues.put(plugin, queue);
+            }
+            if (queue.task == null) {
+                queue.task = Bukkit.getScheduler().runTaskTimer(plugin, queue, CHECK_PERIOD, CHECK_PERIOD);
+            }
+        }
+    }
+
+    /**
+     * Queue the given auto-saved PluginFile to be saved once its auto-save period has passed. This does nothing if the
+     * PluginFile is already queued, or if its plugin has been disabled. This can be called from any thread.
+     * @param plugin - The plugin of the PluginFile
+     * @param pluginFile - The PluginFile that has unsaved changes
+     */
+    static void enqueue(DeadmanPlugin plugin, PluginFile pluginFile) {
+        PluginQueue queue;
+        synchronized (queues) {
+            queue = queues.get(plugin);
+        }
+        if (queue != null) {
+            synchronized (queue) {
+                queue.files.add(pluginFile);
+            }
+        }
+    }
+
+    /**
+     * Run the given write on the shared writer pool, or on the calling thread if the plugin has already been flushed
+     * @param plugin - The plugin of the PluginFile that is being written
+     * @param write - The write to run
+     */
+    static void submit(DeadmanPlugin plugin, Runnable write) {
+        synchronized (queues) {
+            if (!flushed.contains(plugin)) {
+                PluginQueue queue = queues.get(plugin);
+                if (queue == null) {
+                    queue = new PluginQueue(plugin);
+                    queues.put(plugin, queue);
+                }
+                // the write is added while the queue is still registered so that a flush cannot miss it
+                synchronized (queue) {
+                    Iterator<Future<?>> iterator = queue.writes.iterator();
+                    while (iterator.hasNext()) {
+                        if (iterator.next().isDone()) {
+                            iterator.remove();
+                        }
+                    }
+                    queue.writes.add(writers.submit(write));
+                }
+                return;
+            }
+        }
+        // nothing would wait for the write anymore, and registering the plugin again would keep it from being unloaded
+        write.run();
+    }
+
+    /**
+     * Save the queued PluginFiles of the given plugin and wait for its pending writes to finish, for up to {@link #FLUSH_TIMEOUT_MILLIS}.
+     * This must be called on the main thread.
+     * @param plugin - The plugin that is being disabled
+     */
+    static void flush(DeadmanPlugin plugin) {
+        PluginQueue queue;
+        synchronized (queues) {
+            queue = queues.get(plugin);
+            if (queue == null) {
+                flushed.add(plugin);
+                return;
+            }
+        }
+        if (queue.task != null) {
+            queue.task.cancel();
+        }
+
+        List<PluginFile> files;
+        synchronized (queue) {
+            files = new ArrayList<PluginFile>(queue.files);
+            queue.files.clear();
+        }
+        long now = System.currentTimeMillis();
+        for (PluginFile pluginFile : files) {
+            pluginFile.autoSave(now, true);
+        }
+
+        // no more files are queued or written on the writer pool for this plugin once it is removed
+        synchronized (queues) {
+            queues.remove(plugin);
+            flushed.add(plugin);
+        }
+        List<Future<?>> writes;
+        synchronized (queue) {
+            writes = new ArrayList<Future<?>>(queue.writes);
+        }
+        long deadline = now + FLUSH_TIMEOUT_MILLIS;
+        for (int i = 0; i < writes.size(); i++) {
+            try {
+                writes.get(i).get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                int remaining = writes.size() - i;
+                plugin.getLogger().severe("Timed out waiting for " + remaining + " PluginFile saves to finish. They may not be saved");
+                return;
+            } catch (ExecutionException e) {
+                plugin.getLogger().log(Level.SEVERE, "A PluginFile save failed", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+
+    private static class PluginQueue implements Runnable {
+
+        private final DeadmanPlugin plugin;
+        private final Set<PluginFile> files = new LinkedHashSet<PluginFile>();
+        private final List<Future<?>> writes = new ArrayList<Future<?>>();
+        private BukkitTask task;
+
+        private PluginQueue(DeadmanPlugin plugin) {
+            this.plugin = plugin;
+        }
+
+        @Override
+        public void run() {
+            long now = System.currentTimeMillis();
+            List<PluginFile> due = new ArrayList<PluginFile>();
+            synchronized (this) {
+                Iterator<PluginFile> iterator = files.iterator();
+                while (iterator.hasNext()) {
+                    PluginFile pluginFile = iterator.next();
+                    if (pluginFile.isAutoSaveDue(now)) {
+                        iterator.remove();
+                        due.add(pluginFile);
+                    }
+                }
+            }
+            for (PluginFile pluginFile : due) {
+                try {
+                    pluginFile.autoSave(now, false);
+                } catch (RuntimeException e) {
+                    plugin.getLogger().log(Level.SEVERE, "Failed to auto-save " + pluginFile.getFile(), e);
+                }
+            }
+        }
+    }
+
+}
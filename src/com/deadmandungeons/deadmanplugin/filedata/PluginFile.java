@@ -8,14 +8,34 @@ import org.bukkit.configuration.InvalidConfigurationException;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.configuration.file.YamlConfigurationOptions;
+import org.bukkit.configuration.serialization.ConfigurationSerializable;
+import org.bukkit.configuration.serialization.ConfigurationSerialization;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
+import java.util.zip.CRC32;
 
 /**
  * This class is used to represent a YAML file for a DeadmanPlugin which can be easily loaded and saved.
@@ -29,6 +49,7 @@ public class PluginFile {
             "%1$s is unable to parse the file, the plugin may BREAK!\n\n REMEMBER TO KEEP PERIODICAL BACKUPS.\n ";
     private static final String MISSING_RESOURCE_MSG = "The embedded resource '%s' could not be found in this pluigin";
     private static final int MIN_AUTO_SAVE_FREQUENCY = 10; // seconds
+    private static final long DEFAULT_JOURNAL_COMPACT_SIZE = 1024 * 1024; // bytes
 
     private final DeadmanPlugin plugin;
     private final String filePath;
@@ -39,10 +60,34 @@ public class PluginFile {
     private final Integer indent;
     private final String header;
     private final int autoSaveFrequency;
+    private final boolean asyncSave;
+    private final boolean backup;
+    private final Journal journal;
+    private final long journalCompactSize;
+    private final SnapshotCache snapshotCache;
+    private final boolean watched;
+    private final ReloadListener reloadListener;
+
+    // every save takes a sequence number so that an older snapshot is never written over a newer one
+    private final AtomicLong saveSequence = new AtomicLong();
+    private final ReentrantLock saveLock = new ReentrantLock();
+    private long savedSequence;
+    private int recoveredRecords;
+    // the state of the file when it was last written, to skip a save that would write the same content
+    private long savedHash;
+    private long savedCrc;
+    private long savedLength = -1;
+    private long savedLastModified;
+    private volatile int skippedSaves;
+    // the CRC-32 of the file as it was last loaded or saved, to ignore the modifications made by this PluginFile when watched
+    private volatile long fileCrc;
 
     private FileConfiguration fileConfig;
+    // the parsed default resource. This is never handed out, because each load is given its own copy of it
+    private YamlConfiguration defaultConfig;
     private int reloadCount;
-    private boolean dirty;
+    private volatile boolean dirty;
+    private long lastAutoSave;
 
 
     /**
@@ -68,6 +113,12 @@ public class PluginFile {
         private Character pathSeparator;
         private Integer indent;
         private int autoSaveFrequency;
+        private boolean asyncSave;
+        private boolean backup;
+        private long journalCompactSize;
+        private boolean snapshotCache;
+        private boolean watched;
+        private ReloadListener reloadListener;
 
         private Creator(DeadmanPlugin plugin, String filePath) {
             if (plugin == null) {
@@ -110,18 +161,18 @@ public class PluginFile {
          * @see {@link YamlConfigurationOptions#indent(int)}
          */
         public Creator indent(int indent) throws IllegalArgumentException {
-            if (indent < 2 || indent > 9) {
-                throw new IllegalArgumentException("indent cannot be less than 2 or greater than 9");
-            }
+            validateIndent(indent);
             this.indent = indent;
             return this;
         }
 
         /**
-         * A BukkitScheduler repeating timer will be started with a delay and time period equal to the given amount in seconds.
+         * The created PluginFile will be saved at most once every given amount of seconds after it is flagged as dirty with
+         * {@link PluginFile#setDirty()} or {@link PluginFile#set(String, Object)}. The auto-saved PluginFiles of a plugin are
+         * checked by a single shared timer, and the queued saves are flushed when the plugin is disabled.
          * This is useful if data stored in the created PluginFile is updated frequently and when it is not important that recently
          * updated unsaved data is guaranteed to be persisted when reloaded. This is because if the state of the PluginFile is
-         * dirty (unsaved data), and {@link PluginFile#reloadConfig()} is called (or if the plugin is disabled), the reloaded
+         * dirty (unsaved data), and {@link PluginFile#reloadConfig()} is called, the reloaded
          * data would overwrite any previously unsaved data.
          * @param seconds - the frequency of auto-save checks in seconds
          * @return this Creator instance
@@ -129,13 +180,87 @@ public class PluginFile {
          * defeat the purpose of auto-save
          */
         public Creator autoSaveEvery(int seconds) throws IllegalArgumentException {
-            if (seconds < MIN_AUTO_SAVE_FREQUENCY) {
-                throw new IllegalArgumentException("seconds cannot be less than " + MIN_AUTO_SAVE_FREQUENCY);
-            }
+            validateAutoSaveFrequency(seconds);
             this.autoSaveFrequency = seconds;
             return this;
         }
 
+        /**
+         * The auto-save task will save the created PluginFile with {@link PluginFile#saveConfigAsync()} rather than
+         * {@link PluginFile#saveConfig()} so that the YAML serialization and the disk write do not happen on the main thread.
+         * This has no effect if auto-save is not enabled with {@link #autoSaveEvery(int)}.
+         * @return this Creator instance
+         */
+        public Creator asyncSave() {
+            this.asyncSave = true;
+            return this;
+        }
+
+        /**
+         * Keep the previous version of the created PluginFile as a <code>.bak</code> file next to it every time it is saved
+         * @return this Creator instance
+         */
+        public Creator backup() {
+            this.backup = true;
+            return this;
+        }
+
+        /**
+         * Synonymous to {@link #journal(long) journal(1048576)}
+         * @return this Creator instance
+         */
+        public Creator journal() {
+            return journal(DEFAULT_JOURNAL_COMPACT_SIZE);
+        }
+
+        /**
+         * Store the changes made to the created PluginFile with {@link PluginFile#set(String, Object)} in an append-only journal
+         * next to the file. {@link PluginFile#saveChanges()} and the auto-save task only append the changes to the journal
+         * rather than rewriting the whole file, and the journal is replayed over the file when it is loaded.
+         * Once the journal grows beyond the given size, it is compacted by saving the whole file on an async task.<br>
+         * Changes made directly to the {@link PluginFile#getConfig() FileConfiguration} are not journaled,
+         * so they are only persisted by a full save with {@link PluginFile#saveConfig()}, or by the auto-save task after
+         * {@link PluginFile#setDirty()} is called.
+         * @param compactSize - the size in bytes that the journal can grow to before it is compacted
+         * @return this Creator instance
+         * @throws IllegalArgumentException if compactSize is not greater than 0
+         */
+        public Creator journal(long compactSize) throws IllegalArgumentException {
+            validateJournalCompactSize(compactSize);
+            this.journalCompactSize = compactSize;
+            return this;
+        }
+
+        /**
+         * Keep a binary snapshot of the parsed configuration tree as a <code>.cache</code> file next to the created PluginFile,
+         * which is loaded instead of parsing the YAML if the file has not changed since the snapshot was taken.
+         * The snapshot is taken when the file is parsed and every time it is saved.
+         * This is useful for large files because loading the snapshot is much faster than parsing the YAML.
+         * @return this Creator instance
+         */
+        public Creator snapshotCache() {
+            this.snapshotCache = true;
+            return this;
+        }
+
+        /**
+         * Watch the created PluginFile's file for modifications made outside of this plugin, such as by an operator editing it,
+         * and automatically reload it. Once the file has not been modified for half a second, the file is parsed on a separate
+         * thread, and the new {@link FileConfiguration} replaces the current one on the main thread as specified by
+         * {@link PluginFile#reloadConfig()}, after which the given listener is called. The file is not reloaded if its contents
+         * did not change, or if it cannot be parsed, in which case the current FileConfiguration is kept.<br>
+         * Changes that have not been saved yet win over the modified file: if the PluginFile is dirty or has values that
+         * have not been appended to its journal, the reload is skipped with a warning, and the next save overwrites the
+         * modification. Records that were already appended to the journal are replayed over the modified file.
+         * @param reloadListener - The listener to call on the main thread after the PluginFile is reloaded, or null
+         * @return this Creator instance
+         */
+        public Creator watch(ReloadListener reloadListener) {
+            this.watched = true;
+            this.reloadListener = reloadListener;
+            return this;
+        }
+
         /**
          * @return a new PluginFile instance with the details set in this Creator
          * @throws IllegalArgumentException if an embedded resource does not exist at the defaultFilePath (if one was specified)
@@ -159,6 +284,12 @@ public class PluginFile {
         this.pathSeparator = creator.pathSeparator;
         this.indent = creator.indent;
         this.header = String.format(WARNING_MSG, plugin.getName(), file.getName());
+        this.backup = creator.backup;
+        this.journal = (creator.journalCompactSize > 0 ? new Journal(file) : null);
+        this.journalCompactSize = creator.journalCompactSize;
+        this.snapshotCache = (creator.snapshotCache ? new SnapshotCache(file) : null);
+        this.watched = creator.watched;
+        this.reloadListener = creator.reloadListener;
 
         if (defaultFilePath != null && plugin.getClass().getClassLoader().getResource(defaultFilePath) == null) {
             throw new IllegalArgumentException(String.format(MISSING_RESOURCE_MSG, defaultFilePath));
@@ -197,46 +328,90 @@ public class PluginFile {
         } catch (IOException | InvalidConfigurationException e) {
             throw new PluginFileException("Could not load " + file, e);
         }
+        if (recoveredRecords > 0) {
+            compactRecovered();
+        }
         if (isNewFile) {
             try {
-                fileConfig.save(file);
+                AtomicFile.write(file, fileConfig.saveToString(), false);
             } catch (IOException e) {
                 throw new PluginFileException("Could not save " + file, e);
             }
         }
 
-        // File creation/loading has succeeded so start auto-save scheduler if autoSaveFrequency was specified
+        // File creation/loading has succeeded so register with the auto-save timer if autoSaveFrequency was specified
         this.autoSaveFrequency = creator.autoSaveFrequency;
+        this.asyncSave = creator.asyncSave;
         if (autoSaveFrequency >= MIN_AUTO_SAVE_FREQUENCY) {
-            int ticks = autoSaveFrequency * 20;
-            Bukkit.getScheduler().runTaskTimer(plugin, new Runnable() {
+            lastAutoSave = System.currentTimeMillis();
+            PersistenceExecutor.register(plugin);
+        }
 
-                @Override
-                public void run() {
-                    if (dirty) {
-                        saveConfig();
-                    }
-                }
-            }, ticks, ticks);
+        if (watched) {
+            try {
+                FileWatcher.watch(plugin, this);
+            } catch (IOException e) {
+                throw new PluginFileException("Could not watch " + file, e);
+            }
         }
     }
 
 
+    /**
+     * A listener for the reloads of a PluginFile that is watched for modifications
+     * @author Jon
+     * @see Creator#watch(ReloadListener)
+     */
+    public interface ReloadListener {
+
+        /**
+         * This is called on the main thread after the modified file of the given PluginFile was reloaded.
+         * Any values that were cached from its previous {@link FileConfiguration} should be reloaded.
+         * @param pluginFile - The PluginFile that was reloaded
+         */
+        void onReload(PluginFile pluginFile);
+
+    }
+
+    /**
+     * Stop watching the PluginFiles of the given plugin, save its PluginFiles that are queued to be auto-saved,
+     * and wait for its asynchronous saves to finish for up to 10 seconds. This is called when a DeadmanPlugin is disabled.
+     * @param plugin - The DeadmanPlugin that is being disabled
+     */
+    public static void shutdown(DeadmanPlugin plugin) {
+        FileWatcher.close(plugin);
+        PersistenceExecutor.flush(plugin);
+    }
+
+
     /**
      * reload the contents of this PluginFile to its {@link FileConfiguration}, and if this PluginFile
      * has a default resource, set the FileConfiguration defaults to the loaded YamlConfiguration of the default resource.
+     * The default resource is only loaded the first time, and every reload is given its own copy of those defaults.
      * @return <code>true</code> if the FileConfiguration for this PluginFile and its defaults were reloaded successfully. <code>false</code>
-     * otherwise.
+     * otherwise.<br>
+     * A snapshot from {@link #saveConfigAsync()} that has not started to be written yet is discarded along with any other unsaved data.
      */
     public boolean reloadConfig() {
+        // wait for a write in progress and discard pending snapshots so that they cannot overwrite the reloaded file
+        saveLock.lock();
         try {
+            savedSequence = saveSequence.incrementAndGet();
+            if (journal != null) {
+                journal.clearPending();
+            }
             this.fileConfig = loadConfig();
             reloadCount++;
             dirty = false;
+            if (recoveredRecords > 0) {
+                compactRecovered();
+            }
             return true;
         } catch (IOException | InvalidConfigurationException e) {
             plugin.getLogger().log(Level.SEVERE, "Failed to load " + file, e);
             return false;
+        } finally {
+            saveLock.unlock();
         }
     }
 
@@ -249,23 +424,93 @@ public class PluginFile {
     }
 
     /**
-     * Save the {@link FileConfiguration} of this PluginFile to disk.
+     * Save the {@link FileConfiguration} of this PluginFile to disk.<br>
+     * The file is written to a temporary file first which is then atomically renamed to this PluginFile's file,
+     * so a failed save never leaves a partially written file. The file is not written at all if the serialized
+     * FileConfiguration is the same as what this PluginFile last wrote and the file has not been modified since.
      * @return true if the file was successfully saved and false if an IOException occurred
      */
     public boolean saveConfig() {
+        long sequence = saveSequence.incrementAndGet();
+        long journalMark = (journal != null ? journal.mark() : 0);
+        dirty = false;
+        return writeConfig(getConfig(), sequence, journalMark);
+    }
+
+    /**
+     * If this PluginFile is journaled, append the values that were set with {@link #set(String, Object)} since the last save
+     * to the journal, which only costs as much as the size of the changes. The journal is compacted on an async task
+     * once it grows beyond its compact size. If {@link #setDirty()} was called, the whole file is saved instead.<br>
+     * If this PluginFile is not journaled, this is synonymous to {@link #saveConfig()}.
+     * @return true if the changes were successfully saved and false if an IOException occurred
+     * @see Creator#journal(long)
+     */
+    public boolean saveChanges() {
+        if (journal == null || dirty) {
+            return saveConfig();
+        }
+        return appendJournal(true);
+    }
+
+    /**
+     * Set the given value at the given path in the {@link FileConfiguration} of this PluginFile.
+     * If this PluginFile is journaled, the value is recorded to be appended to the journal by the next save,
+     * otherwise this PluginFile is flagged as dirty as specified by {@link #setDirty()}.
+     * @param path - The path of the value to set
+     * @param value - The value to set, or null to remove the value at the given path
+     * @see ConfigurationSection#set(String, Object)
+     */
+    public void set(String path, Object value) {
+        getConfig().set(path, value);
+        if (journal != null) {
+            journal.record(path, value);
+        } else {
+            dirty = true;
+        }
+        if (autoSaveFrequency > 0) {
+            PersistenceExecutor.enqueue(plugin, this);
+        }
+    }
+
+    /**
+     * Save a snapshot of the {@link FileConfiguration} of this PluginFile to disk on the persistence writer threads that
+     * are shared by every PluginFile.<br>
+     * The snapshot is a copy of the configuration tree taken on the calling thread, which should be the main thread,
+     * so the FileConfiguration can be modified freely as soon as this method returns. {@link ConfigurationSerializable} values
+     * such as ItemStacks and Locations are copied in their serialized form, which is saved the same as the objects themselves.
+     * If the configuration has a value of any other mutable type that cannot be copied, it is saved synchronously
+     * as specified by {@link #saveConfig()} instead. The snapshot is serialized
+     * and written on a writer thread, and it is not written if a newer snapshot or a synchronous {@link #saveConfig()}
+     * has been made in the meantime. If the write fails, this PluginFile is flagged as dirty again.<br>
+     * The write is waited for when the plugin is disabled as specified by {@link #shutdown(DeadmanPlugin)}.
+     */
+    public void saveConfigAsync() {
+        final YamlConfiguration snapshot = createYamlConfiguration();
         try {
-            plugin.getLogger().info("Save file: " + file.getName());
-            getConfig().save(file);
-            dirty = false;
-            return true;
-        } catch (IOException ex) {
-            plugin.getLogger().log(Level.SEVERE, "Could not save config to " + file, ex);
-            return false;
+            snapshotSection(getConfig(), snapshot);
+        } catch (IllegalArgumentException e) {
+            // the value could not be copied, so it cannot be safely serialized off the main thread
+            saveConfig();
+            return;
         }
+        final long sequence = saveSequence.incrementAndGet();
+        final long journalMark = (journal != null ? journal.mark() : 0);
+        dirty = false;
+        PersistenceExecutor.submit(plugin, new Runnable() {
+
+            @Override
+            public void run() {
+                // a newer snapshot is already saved or will be saved
+                if (sequence == saveSequence.get()) {
+                    writeConfig(snapshot, sequence, journalMark);
+                }
+            }
+        });
     }
 
     /**
-     * Flag this PluginFile as having a dirty state and that the auto-saver task should save the FileConfiguration to file.
+     * Flag this PluginFile as having a dirty state and queue it to be saved once its auto-save period has passed.
+     * Calling this again before the PluginFile is saved does nothing.
      * @throws IllegalStateException if auto-save functionality was not enabled for this PluginFile which can be checked
      * Programmatically by checking if {@link #getAutoSaveFrequency()} is greater than 0.
      */
@@ -273,8 +518,87 @@ public class PluginFile {
         if (autoSaveFrequency == 0) {
             throw new IllegalStateException("auto-save functionality was not enabled for this PluginFile");
         }
-        if (!dirty) {
-            dirty = true;
+        dirty = true;
+        PersistenceExecutor.enqueue(plugin, this);
+    }
+
+    /**
+     * @param path - The path of the String list of DataEntries in the FileConfiguration of this PluginFile
+     * @return a new List of the DataEntries parsed from each String at the given path, or an empty list if there is no list at the path
+     */
+    public List<DataEntry> getDataEntries(String path) {
+        return getDataEntries(path, null);
+    }
+
+    /**
+     * Large lists are decoded in parallel as specified by {@link DataEntryLoader#load(List, DataEntryLoader.Callback)}
+     * @param path - The path of the String list of DataEntries in the FileConfiguration of this PluginFile
+     * @param callback - The Callback that validates each loaded entry and reports each invalid entry on this thread, or null
+     * @return a new List of the DataEntries parsed from each String at the given path in the same order,
+     * or an empty list if there is no list at the path
+     */
+    public List<DataEntry> getDataEntries(String path, DataEntryLoader.Callback callback) {
+        List<?> entryStrs = getConfig().getList(path);
+        if (entryStrs == null) {
+            return new ArrayList<DataEntry>();
+        }
+        return DataEntryLoader.load(entryStrs, callback);
+    }
+
+    /**
+     * Set the given DataEntries as a String list at the given path in the FileConfiguration of this PluginFile
+     * @param path - The path of the String list of DataEntries
+     * @param entries - The DataEntries to set, or null to remove the list at the given path
+     */
+    public void setDataEntries(String path, Collection<? extends DataEntry> entries) {
+        List<String> entryStrs = null;
+        if (entries != null) {
+            entryStrs = new ArrayList<String>(entries.size());
+            for (DataEntry entry : entries) {
+                entryStrs.add(entry.toString());
+            }
+        }
+        getConfig().set(path, entryStrs);
+    }
+
+    /**
+     * Write the DataEntries at the given path to the given file in the compact {@link BinaryEntryFormat}.
+     * The file is replaced atomically like the file of this PluginFile is when it is saved, so a failed write never leaves
+     * a partially written file.
+     * @param path - The path of the String list of DataEntries in the FileConfiguration of this PluginFile
+     * @param binaryFile - The file to write the binary data to
+     * @return true if the file was successfully written and false if an IOException occurred
+     */
+    public boolean writeBinary(String path, File binaryFile) {
+        try {
+            List<DataEntry> entries = getDataEntries(path);
+            for (DataEntry entry : entries) {
+                entry.slots().compactNumbers();
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            BinaryEntryFormat.write(entries, out);
+            AtomicFile.write(binaryFile, out.toByteArray(), false);
+            return true;
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Could not write binary data entries to " + binaryFile, e);
+            return false;
+        }
+    }
+
+    /**
+     * Read DataEntries in the {@link BinaryEntryFormat} from the given file and set them at the given path
+     * as specified by {@link #setDataEntries(String, Collection)}
+     * @param binaryFile - The file to read the binary data from
+     * @param path - The path to set the String list of DataEntries at
+     * @return true if the file was successfully read and false if an IOException occurred
+     */
+    public boolean readBinary(File binaryFile, String path) {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(binaryFile))) {
+            setDataEntries(path, BinaryEntryFormat.read(in, binaryFile.length()));
+            return true;
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Could not read binary data entries from " + binaryFile, e);
+            return false;
         }
     }
 
@@ -295,11 +619,404 @@ public class PluginFile {
         return reloadCount;
     }
 
+    /**
+     * @return the amount of times a save of this PluginFile was skipped because the file already had the same content
+     */
+    public int getSkippedSaveCount() {
+        return skippedSaves;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * Delete the file of this PluginFile along with its journal and snapshot cache, even if they are not enabled.
+     * This PluginFile must not be used afterwards.
+     * @return true if the file no longer exists
+     */
+    boolean delete() {
+        saveLock.lock();
+        try {
+            (journal != null ? journal : new Journal(file)).delete();
+            (snapshotCache != null ? snapshotCache : new SnapshotCache(file)).delete();
+            return file.delete() || !file.exists();
+        } finally {
+            saveLock.unlock();
+        }
+    }
+
+    boolean isAutoSaveDue(long now) {
+        return now - lastAutoSave >= autoSaveFrequency * 1000L;
+    }
+
+    /**
+     * Save the changes of this auto-saved PluginFile. This is called on the main thread by the {@link PersistenceExecutor}
+     * @param now - The current time in milliseconds
+     * @param flush - true if the plugin is being disabled, in which case the save is asynchronous so that it can be waited for with
+     * a timeout, and a compaction in progress is waited for before appending to the journal
+     */
+    void autoSave(long now, boolean flush) {
+        lastAutoSave = now;
+        if (dirty) {
+            if (asyncSave || flush) {
+                saveConfigAsync();
+            } else {
+                saveConfig();
+            }
+        } else if (journal != null) {
+            // only wait for a compaction in progress on the main thread if the plugin is being disabled
+            appendJournal(flush);
+            if (journal.hasPending()) {
+                PersistenceExecutor.enqueue(plugin, this);
+            }
+        }
+    }
+
+    /**
+     * Reload the file of this PluginFile after it was modified. This is called on the watcher thread, where the file is parsed,
+     * and the parsed FileConfiguration replaces the current one on the main thread.
+     */
+    void reloadModified() {
+        if (!file.exists() || !plugin.isEnabled()) {
+            return;
+        }
+        long lastModified = file.lastModified();
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file.toPath());
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Could not read modified file " + file, e);
+            return;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        final long newCrc = crc.getValue();
+        final long expectedCrc = fileCrc;
+        if (newCrc == expectedCrc) {
+            // this is the file as it was last loaded or saved by this PluginFile
+            return;
+        }
+
+        final YamlConfiguration config = createYamlConfiguration();
+        try {
+            if (defaultFilePath != null) {
+                config.setDefaults(getDefaultConfig());
+            }
+            config.loadFromString(new String(bytes, StandardCharsets.UTF_8));
+        } catch (IOException | InvalidConfigurationException e) {
+            plugin.getLogger().log(Level.WARNING, "Could not reload modified file " + file + ". Its previous contents are still used", e);
+            return;
+        }
+        if (snapshotCache != null) {
+            saveLock.lock();
+            try {
+                snapshotCache.write(config, bytes.length, lastModified, newCrc);
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.WARNING, "Could not write snapshot cache of " + file, e);
+            } finally {
+                saveLock.unlock();
+            }
+        }
+
+        Bukkit.getScheduler().runTask(plugin, new Runnable() {
+
+            @Override
+            public void run() {
+                if (replaceConfig(config, newCrc, expectedCrc)) {
+                    plugin.getLogger().info("Reloaded modified file: " + file.getName());
+                    if (reloadListener != null) {
+                        reloadListener.onReload(PluginFile.this);
+                    }
+                }
+            }
+        });
+    }
+
+
+    private boolean writeConfig(FileConfiguration config, long sequence, long journalMark) {
+        saveLock.lock();
+        try {
+            if (sequence <= savedSequence) {
+                // a newer snapshot has already been saved
+                return true;
+            }
+            String data = config.saveToString();
+            long hash = hash(data);
+            if (hash == savedHash && savedLength == file.length() && savedLastModified == file.lastModified()) {
+                skippedSaves++;
+                if (journal != null && !journal.isEmpty()) {
+                    // the journaled values are already in the file
+                    journal.prepareRebase(savedCrc, journalMark);
+                    journal.commitRebase();
+                }
+                savedSequence = sequence;
+                return true;
+            }
+
+            plugin.getLogger().info("Save file: " + file.getName());
+            long crc = AtomicFile.writeTemp(file, data);
+            if (journal != null) {
+                journal.prepareRebase(crc, journalMark);
+            }
+            AtomicFile.commit(file, backup);
+            if (journal != null) {
+                journal.commitRebase();
+            }
+            savedSequence = sequence;
+            savedHash = hash;
+            savedCrc = crc;
+            savedLength = file.length();
+            savedLastModified = file.lastModified();
+            fileCrc = crc;
+            if (snapshotCache != null) {
+                writeSnapshot(config, crc);
+            }
+            return true;
+        } catch (IOException ex) {
+            plugin.getLogger().log(Level.SEVERE, "Could not save config to " + file, ex);
+            if (journal != null) {
+                journal.abortRebase();
+            }
+            dirty = true;
+            if (autoSaveFrequency > 0) {
+                PersistenceExecutor.enqueue(plugin, this);
+            }
+            return false;
+        } finally {
+            saveLock.unlock();
+        }
+    }
+
+    private boolean replaceConfig(YamlConfiguration config, long newCrc, long expectedCrc) {
+        saveLock.lock();
+        try {
+            if (fileCrc != expectedCrc) {
+                // the file was saved or reloaded by this PluginFile after it was modified
+                return false;
+            }
+            if (dirty || (journal != null && journal.hasPending())) {
+                plugin.getLogger().warning("Not reloading modified file " + file.getName() + " because it has unsaved changes. "
+                        + "The modification will be overwritten when it is saved");
+                return false;
+            }
+            savedSequence = saveSequence.incrementAndGet();
+            if (journal != null) {
+                recoveredRecords = journal.recover(config, newCrc);
+                if (recoveredRecords > 0) {
+                    plugin.getLogger().warning(recoveredRecords + " journal records of " + file.getName()
+                            + " were replayed over the modified file, and take precedence over the modification");
+                }
+            }
+            this.fileConfig = config;
+            fileCrc = newCrc;
+            reloadCount++;
+            dirty = false;
+            if (recoveredRecords > 0) {
+                compactRecovered();
+            }
+            return true;
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to load journal of modified file " + file, e);
+            return false;
+        } finally {
+            saveLock.unlock();
+        }
+    }
+
+    private boolean appendJournal(boolean wait) {
+        if (!journal.hasPending()) {
+            return true;
+        }
+        if (wait) {
+            saveLock.lock();
+        } else if (!saveLock.tryLock()) {
+            // the pending records are appended by the next save
+            return true;
+        }
+        boolean compact;
+        try {
+            journal.append();
+            compact = journal.length() > journalCompactSize;
+        } catch (IOException ex) {
+            plugin.getLogger().log(Level.SEVERE, "Could not append to journal of " + file, ex);
+            return false;
+        } finally {
+            saveLock.unlock();
+        }
+        if (compact) {
+            saveConfigAsync();
+        }
+        return true;
+    }
+
+    private void compactRecovered() {
+        // if this fails, the records stay in the journal and are replayed again by the next load
+        plugin.getLogger().info("Recovered " + recoveredRecords + " journal records for file: " + file.getName());
+        recoveredRecords = 0;
+        saveConfig();
+    }
+
+    // The option validators that are shared with ShardedPluginFile.Creator
+
+    static void validateIndent(int indent) throws IllegalArgumentException {
+        if (indent < 2 || indent > 9) {
+            throw new IllegalArgumentException("indent cannot be less than 2 or greater than 9");
+        }
+    }
+
+    static void validateAutoSaveFrequency(int seconds) throws IllegalArgumentException {
+        if (seconds < MIN_AUTO_SAVE_FREQUENCY) {
+            throw new IllegalArgumentException("seconds cannot be less than " + MIN_AUTO_SAVE_FREQUENCY);
+        }
+    }
+
+    static void validateJournalCompactSize(long compactSize) throws IllegalArgumentException {
+        if (compactSize <= 0) {
+            throw new IllegalArgumentException("compactSize must be greater than 0");
+        }
+    }
+
+    private static long hash(CharSequence data) {
+        // 64-bit FNV-1a of the chars
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < data.length(); i++) {
+            hash ^= data.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    static void copySection(ConfigurationSection source, ConfigurationSection target) {
+        for (Map.Entry<String, Object> entry : source.getValues(false).entrySet()) {
+            if (entry.getValue() instanceof ConfigurationSection) {
+                copySection((ConfigurationSection) entry.getValue(), target.createSection(entry.getKey()));
+            } else {
+                target.set(entry.getKey(), copyValue(entry.getValue()));
+            }
+        }
+    }
+
+    private static Object copyValue(Object value) {
+        // Lists and Maps are the only mutable types that a YAML value is loaded as
+        if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            List<Object> copy = new ArrayList<Object>(list.size());
+            for (Object element : list) {
+                copy.add(copyValue(element));
+            }
+            return copy;
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            Map<Object, Object> copy = new LinkedHashMap<Object, Object>(map.size() * 4 / 3 + 1);
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                copy.put(entry.getKey(), copyValue(entry.getValue()));
+            }
+            return copy;
+        }
+        return value;
+    }
+
+    private static void snapshotSection(ConfigurationSection source, ConfigurationSection target) throws IllegalArgumentException {
+        for (Map.Entry<String, Object> entry : source.getValues(false).entrySet()) {
+            if (entry.getValue() instanceof ConfigurationSection) {
+                snapshotSection((ConfigurationSection) entry.getValue(), target.createSection(entry.getKey()));
+            } else {
+                target.set(entry.getKey(), snapshotValue(entry.getValue()));
+            }
+        }
+    }
+
+    private static Object snapshotValue(Object value) throws IllegalArgumentException {
+        if (value == null || value instanceof String || value instanceof Boolean || value instanceof Character
+                || value instanceof Integer || value instanceof Long || value instanceof Double || value instanceof Float
+                || value instanceof Short || value instanceof Byte || value instanceof BigInteger || value instanceof BigDecimal
+                || value instanceof Enum || value instanceof UUID) {
+            return value;
+        } else if (value instanceof Date) {
+            return new Date(((Date) value).getTime());
+        } else if (value instanceof ConfigurationSerializable) {
+            // the serialized form is represented exactly like the object is by the YAML dumper and by the snapshot cache
+            ConfigurationSerializable serializable = (ConfigurationSerializable) value;
+            Map<String, Object> serialized = new LinkedHashMap<String, Object>();
+            serialized.put(ConfigurationSerialization.SERIALIZED_TYPE_KEY, ConfigurationSerialization.getAlias(serializable.getClass()));
+            for (Map.Entry<String, Object> entry : serializable.serialize().entrySet()) {
+                serialized.put(entry.getKey(), snapshotValue(entry.getValue()));
+            }
+            return serialized;
+        } else if (value instanceof ConfigurationSection) {
+            return snapshotValue(((ConfigurationSection) value).getValues(false));
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            List<Object> copy = new ArrayList<Object>(list.size());
+            for (Object element : list) {
+                copy.add(snapshotValue(element));
+            }
+            return copy;
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            Map<Object, Object> copy = new LinkedHashMap<Object, Object>(map.size() * 4 / 3 + 1);
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                copy.put(snapshotValue(entry.getKey()), snapshotValue(entry.getValue()));
+            }
+            return copy;
+        }
+        throw new IllegalArgumentException("A value of type " + value.getClass().getName() + " cannot be copied into a snapshot");
+    }
 
     private YamlConfiguration loadConfig() throws IOException, InvalidConfigurationException {
         YamlConfiguration fileConfig = createYamlConfiguration();
         if (defaultFilePath != null) {
-            // Look for defaults in the jar
+            fileConfig.setDefaults(getDefaultConfig());
+        }
+        // the file is always decoded as UTF-8, which is what it is written with, rather than with the platform charset
+        // that YamlConfiguration#load(File) may use. The journal, the snapshot cache, and the watcher need its checksum
+        long lastModified = file.lastModified();
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        boolean loaded = false;
+        if (snapshotCache != null) {
+            try {
+                loaded = snapshotCache.read(fileConfig, bytes.length, lastModified, crc.getValue());
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.WARNING, "Could not load snapshot cache of " + file + ". The file will be parsed instead", e);
+                fileConfig = createYamlConfiguration();
+                if (defaultFilePath != null) {
+                    fileConfig.setDefaults(getDefaultConfig());
+                }
+            }
+        }
+        if (!loaded) {
+            fileConfig.loadFromString(new String(bytes, StandardCharsets.UTF_8));
+            if (snapshotCache != null) {
+                try {
+                    snapshotCache.write(fileConfig, bytes.length, lastModified, crc.getValue());
+                } catch (IOException e) {
+                    plugin.getLogger().log(Level.WARNING, "Could not write snapshot cache of " + file, e);
+                }
+            }
+        }
+        if (journal != null) {
+            recoveredRecords = journal.recover(fileConfig, crc.getValue());
+        }
+        fileCrc = crc.getValue();
+        return fileConfig;
+    }
+
+    private void writeSnapshot(FileConfiguration config, long crc) {
+        try {
+            snapshotCache.write(config, savedLength, savedLastModified, crc);
+        } catch (IOException e) {
+            // the file was saved, so the next load only has to parse it
+            plugin.getLogger().log(Level.WARNING, "Could not write snapshot cache of " + file, e);
+        }
+    }
+
+    private YamlConfiguration getDefaultConfig() throws IOException, InvalidConfigurationException {
+        // The embedded resource cannot change while the plugin is loaded, so it is only parsed once.
+        // A copy is returned so that defaults added to or changed in one load do not carry over to the next
+        if (defaultConfig == null) {
             InputStream defConfigStream = plugin.getResource(defaultFilePath);
             if (defConfigStream == null) {
                 // This shoudln't happen because we validate that the default resource exists in constructor
@@ -307,11 +1024,14 @@ public class PluginFile {
             }
 
             YamlConfiguration defaultConfig = createYamlConfiguration();
-            defaultConfig.load(new InputStreamReader(defConfigStream));
-            fileConfig.setDefaults(defaultConfig);
+            try (Reader reader = new InputStreamReader(defConfigStream, StandardCharsets.UTF_8)) {
+                defaultConfig.load(reader);
+            }
+            this.defaultConfig = defaultConfig;
         }
-        fileConfig.load(file);
-        return fileConfig;
+        YamlConfiguration defaults = createYamlConfiguration();
+        copySection(defaultConfig, defaults);
+        return defaults;
     }
 
     private void saveResource(String resourcePath, File outFile) throws IOException {
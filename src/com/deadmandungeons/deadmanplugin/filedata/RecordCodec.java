@@ -0,0 +1,64 @@
+package com.deadmandungeons.deadmanplugin.filedata;
+
+import com.deadmandungeons.deadmanplugin.filedata.DataEntry.DataKey;
+import org.apache.commons.lang.Validate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A {@link DataCodec} for an object that is composed of the objects of other codecs.<br>
+ * The keys of a RecordCodec are all of the keys of its component codecs as well as any additional keys,
+ * so the memoized record is reset whenever a value of any of its components is set.
+ * Implementations should decode and encode each component with {@link DataEntry#get(DataCodec)} and
+ * {@link DataEntry#set(DataCodec, Object)} so that the memoized component objects are shared with the record.
+ * @param <T> - The type of the record that this codec encodes and decodes
+ * @author Jon
+ */
+public abstract class RecordCodec<T> extends DataCodec<T> {
+
+    private final List<DataCodec<?>> components;
+
+    /**
+     * @param type - The type of the record that the constructed codec encodes and decodes
+     * @param components - The codecs of the objects that make up the record
+     * @throws IllegalArgumentException if type is null or if components is empty
+     */
+    protected RecordCodec(Class<T> type, DataCodec<?>... components) throws IllegalArgumentException {
+        this(type, components, new DataKey[0]);
+    }
+
+    /**
+     * @param type - The type of the record that the constructed codec encodes and decodes
+     * @param components - The codecs of the objects that make up the record
+     * @param keys - The keys of any additional values of the record that are not part of a component
+     * @throws IllegalArgumentException if type is null or if components is empty
+     */
+    protected RecordCodec(Class<T> type, DataCodec<?>[] components, DataKey... keys) throws IllegalArgumentException {
+        super(type, keysOf(components, keys));
+        this.components = Collections.unmodifiableList(new ArrayList<DataCodec<?>>(Arrays.asList(components)));
+    }
+
+    private static DataKey[] keysOf(DataCodec<?>[] components, DataKey[] keys) {
+        Validate.notEmpty(components, "components cannot be empty");
+        Set<DataKey> allKeys = new LinkedHashSet<DataKey>();
+        for (DataCodec<?> component : components) {
+            Validate.notNull(component, "components cannot contain null");
+            allKeys.addAll(component.getKeys());
+        }
+        allKeys.addAll(Arrays.asList(keys));
+        return allKeys.toArray(new DataKey[allKeys.size()]);
+    }
+
+    /**
+     * @return an unmodifiable List of the codecs of the objects that make up the record
+     */
+    public final List<DataCodec<?>> getComponents() {
+        return components;
+    }
+
+}
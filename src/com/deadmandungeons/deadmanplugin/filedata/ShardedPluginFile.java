@@ -0,0 +1,523 @@
+package com.deadmandungeons.deadmanplugin.filedata;
+
+import com.deadmandungeons.deadmanplugin.DeadmanPlugin;
+import com.deadmandungeons.deadmanplugin.filedata.PluginFile.PluginFileException;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class is used to represent a large YAML data file for a DeadmanPlugin that is split into several {@link PluginFile} shards,
+ * so that the shards can be loaded in parallel, and only the shards that were changed have to be saved.<br>
+ * Each top-level key is stored in the shard at the index <code>(key.hashCode() &amp; 0x7fffffff) % shardCount</code>,
+ * which is stable because {@link String#hashCode()} is specified. If the shard count is changed, the keys that are stored
+ * in the wrong shard are moved to their new shard when the ShardedPluginFile is loaded. If the shard count was lowered,
+ * the keys of the shard files beyond the new shard count are moved as well, and those files are deleted once the shards
+ * that their keys were moved to have been saved.<br>
+ * The shards of a file at <code>data/arenas.yml</code> with 4 shards are <code>data/arenas-0.yml</code> through
+ * <code>data/arenas-3.yml</code>.
+ * @author Jon
+ * @see {@link ShardedPluginFile#creator(DeadmanPlugin, String, int)}
+ */
+public class ShardedPluginFile {
+
+    private static final int CLEAN = 0;
+    private static final int CHANGED = 1;
+    private static final int DIRTY = 2;
+
+    private final DeadmanPlugin plugin;
+    private final String filePath;
+    private final char pathSeparator;
+    private final List<PluginFile> shards;
+    // only accessed on the main thread
+    private final int[] shardStates;
+
+
+    /**
+     * @param plugin - The DeadmanPlugin instance the created ShardedPluginFile belongs to
+     * @param filePath - The path to the file relative to the plugin's directory, which the shard file names are derived from.
+     * Any shard file that does not exist will be created.
+     * @param shardCount - The amount of shards to split the file into
+     * @return a new Creator object to further define the ShardedPluginFile details and ultimately create the ShardedPluginFile
+     * @throws IllegalArgumentException if shardCount is less than 1
+     */
+    public static Creator creator(DeadmanPlugin plugin, String filePath, int shardCount) throws IllegalArgumentException {
+        return new Creator(plugin, filePath, shardCount);
+    }
+
+    /**
+     * This class acts as a ShardedPluginFile builder to enable the {@link PluginFile.Creator} options of each shard.
+     * The options are validated the same way as they are by a PluginFile.Creator.
+     * @author Jon
+     */
+    public static class Creator {
+
+        private final DeadmanPlugin plugin;
+        private final String filePath;
+        private final int shardCount;
+
+        private Character pathSeparator;
+        private Integer indent;
+        private int autoSaveFrequency;
+        private boolean asyncSave;
+        private boolean backup;
+        private long journalCompactSize;
+        private boolean snapshotCache;
+
+        private Creator(DeadmanPlugin plugin, String filePath, int shardCount) {
+            if (plugin == null) {
+                throw new IllegalArgumentException("plugin cannot be null");
+            }
+            if (filePath == null) {
+                throw new IllegalArgumentException("filePath cannot be null");
+            }
+            if (shardCount < 1) {
+                throw new IllegalArgumentException("shardCount cannot be less than 1");
+            }
+            this.plugin = plugin;
+            this.filePath = filePath;
+            this.shardCount = shardCount;
+        }
+
+        /**
+         * @return this Creator instance
+         * @see PluginFile.Creator#pathSeparator(char)
+         */
+        public Creator pathSeparator(char pathSeparator) {
+            this.pathSeparator = pathSeparator;
+            return this;
+        }
+
+        /**
+         * @return this Creator instance
+         * @see PluginFile.Creator#indent(int)
+         */
+        public Creator indent(int indent) throws IllegalArgumentException {
+            PluginFile.validateIndent(indent);
+            this.indent = indent;
+            return this;
+        }
+
+        /**
+         * Each shard is auto-saved independently, so only the shards that were flagged as dirty are saved
+         * @return this Creator instance
+         * @see PluginFile.Creator#autoSaveEvery(int)
+         */
+        public Creator autoSaveEvery(int seconds) throws IllegalArgumentException {
+            PluginFile.validateAutoSaveFrequency(seconds);
+            this.autoSaveFrequency = seconds;
+            return this;
+        }
+
+        /**
+         * @return this Creator instance
+         * @see PluginFile.Creator#asyncSave()
+         */
+        public Creator asyncSave() {
+            this.asyncSave = true;
+            return this;
+        }
+
+        /**
+         * @return this Creator instance
+         * @see PluginFile.Creator#backup()
+         */
+        public Creator backup() {
+            this.backup = true;
+            return this;
+        }
+
+        /**
+         * @return this Creator instance
+         * @see PluginFile.Creator#journal(long)
+         */
+        public Creator journal(long compactSize) throws IllegalArgumentException {
+            PluginFile.validateJournalCompactSize(compactSize);
+            this.journalCompactSize = compactSize;
+            return this;
+        }
+
+        /**
+         * @return this Creator instance
+         * @see PluginFile.Creator#snapshotCache()
+         */
+        public Creator snapshotCache() {
+            this.snapshotCache = true;
+            return this;
+        }
+
+        /**
+         * The shards are created and loaded in parallel
+         * @return a new ShardedPluginFile instance with the details set in this Creator
+         * @throws PluginFileException if any of the shards failed to be created (if it did not exist), or if it failed to be loaded
+         */
+        public ShardedPluginFile create() throws PluginFileException {
+            return new ShardedPluginFile(this);
+        }
+
+        private PluginFile.Creator shardCreator(int index, boolean live) {
+            PluginFile.Creator creator = PluginFile.creator(plugin, getShardPath(filePath, index));
+            if (pathSeparator != null) {
+                creator.pathSeparator(pathSeparator);
+            }
+            if (indent != null) {
+                creator.indent(indent);
+            }
+            // a retired shard is deleted once it is loaded
+            if (autoSaveFrequency > 0 && live) {
+                creator.autoSaveEvery(autoSaveFrequency);
+            }
+            if (asyncSave) {
+                creator.asyncSave();
+            }
+            if (backup) {
+                creator.backup();
+            }
+            if (journalCompactSize > 0) {
+                creator.journal(journalCompactSize);
+            }
+            if (snapshotCache) {
+                creator.snapshotCache();
+            }
+            return creator;
+        }
+
+    }
+
+    private ShardedPluginFile(final Creator creator) throws PluginFileException {
+        this.plugin = creator.plugin;
+        this.filePath = creator.filePath;
+        this.pathSeparator = (creator.pathSeparator != null ? creator.pathSeparator : '.');
+        this.shardStates = new int[creator.shardCount];
+
+        // the shard files beyond the shard count are left from a higher shard count, and their keys have to be moved
+        int retiredCount = 0;
+        while (new File(plugin.getDataFolder(), getShardPath(filePath, creator.shardCount + retiredCount)).exists()) {
+            retiredCount++;
+        }
+
+        int fileCount = creator.shardCount + retiredCount;
+        List<Callable<PluginFile>> tasks = new ArrayList<Callable<PluginFile>>(fileCount);
+        for (int i = 0; i < fileCount; i++) {
+            final PluginFile.Creator shardCreator = creator.shardCreator(i, i < creator.shardCount);
+            tasks.add(new Callable<PluginFile>() {
+
+                @Override
+                public PluginFile call() throws PluginFileException {
+                    return shardCreator.create();
+                }
+            });
+        }
+        List<PluginFile> files = invokeAll(tasks);
+        this.shards = Collections.unmodifiableList(new ArrayList<PluginFile>(files.subList(0, creator.shardCount)));
+
+        List<PluginFile> retired = files.subList(creator.shardCount, fileCount);
+        if (!retired.isEmpty()) {
+            plugin.getLogger().info("Merging " + retired.size() + " retired shards of file '" + filePath + "' into its " + shards.size() + " shards");
+        }
+        moveMisplacedKeys(retired);
+    }
+
+
+    /**
+     * Reload every shard in parallel as specified by {@link PluginFile#reloadConfig()}
+     * @return <code>true</code> if every shard was reloaded successfully. <code>false</code> otherwise.
+     */
+    public boolean reloadConfig() {
+        List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>(shards.size());
+        for (final PluginFile shard : shards) {
+            tasks.add(new Callable<Boolean>() {
+
+                @Override
+                public Boolean call() {
+                    return shard.reloadConfig();
+                }
+            });
+        }
+        boolean reloaded = true;
+        for (Boolean shardReloaded : invokeAll(tasks)) {
+            reloaded &= shardReloaded;
+        }
+        for (int i = 0; i < shardStates.length; i++) {
+            shardStates[i] = CLEAN;
+        }
+        moveMisplacedKeys(Collections.<PluginFile>emptyList());
+        return reloaded;
+    }
+
+    /**
+     * @param key - The top-level key, or a path starting with the top-level key
+     * @return the shard that stores the given top-level key
+     */
+    public PluginFile getShard(String key) {
+        return shards.get(getShardIndex(key));
+    }
+
+    /**
+     * @return an unmodifiable List of the shards of this ShardedPluginFile ordered by their index
+     */
+    public List<PluginFile> getShards() {
+        return shards;
+    }
+
+    /**
+     * @return a new Set of the top-level keys of every shard
+     */
+    public Set<String> getKeys() {
+        Set<String> keys = new LinkedHashSet<String>();
+        for (PluginFile shard : shards) {
+            keys.addAll(shard.getConfig().getKeys(false));
+        }
+        return keys;
+    }
+
+    /**
+     * @param path - The path of the value
+     * @return true if the shard of the given path contains a value at the path
+     * @see ConfigurationSection#contains(String)
+     */
+    public boolean contains(String path) {
+        return getShard(path).getConfig().contains(path);
+    }
+
+    /**
+     * @param path - The path of the value
+     * @return the value at the given path in its shard, or null if there is no value at the path
+     * @see ConfigurationSection#get(String)
+     */
+    public Object get(String path) {
+        return getShard(path).getConfig().get(path);
+    }
+
+    /**
+     * @param path - The path of the section
+     * @return the section at the given path in its shard, or null if there is no section at the path.
+     * {@link #setDirty(String)} should be called after the returned section is modified
+     * @see ConfigurationSection#getConfigurationSection(String)
+     */
+    public ConfigurationSection getConfigurationSection(String path) {
+        return getShard(path).getConfig().getConfigurationSection(path);
+    }
+
+    /**
+     * Set the given value at the given path in its shard as specified by {@link PluginFile#set(String, Object)},
+     * and flag the shard as changed so that it is saved by the next {@link #saveConfig()}
+     * @param path - The path of the value to set
+     * @param value - The value to set, or null to remove the value at the given path
+     */
+    public void set(String path, Object value) {
+        int index = getShardIndex(path);
+        shards.get(index).set(path, value);
+        if (shardStates[index] == CLEAN) {
+            shardStates[index] = CHANGED;
+        }
+    }
+
+    /**
+     * Flag the shard of the given key as dirty after its values were modified directly, so that the whole shard is saved
+     * by the next {@link #saveConfig()}. If auto-save is enabled, the shard is also flagged as specified by {@link PluginFile#setDirty()}.
+     * @param key - The top-level key, or a path starting with the top-level key
+     */
+    public void setDirty(String key) {
+        int index = getShardIndex(key);
+        shardStates[index] = DIRTY;
+        PluginFile shard = shards.get(index);
+        if (shard.getAutoSaveFrequency() > 0) {
+            shard.setDirty();
+        }
+    }
+
+    /**
+     * Save the shards that were changed since they were last saved by this ShardedPluginFile.
+     * A shard that was only changed with {@link #set(String, Object)} is saved with {@link PluginFile#saveChanges()},
+     * and a shard that was flagged with {@link #setDirty(String)} is saved with {@link PluginFile#saveConfig()}.
+     * @return true if every changed shard was successfully saved and false if an IOException occurred
+     */
+    public boolean saveConfig() {
+        boolean saved = true;
+        for (int i = 0; i < shards.size(); i++) {
+            if (shardStates[i] == CHANGED) {
+                saved &= shards.get(i).saveChanges();
+            } else if (shardStates[i] == DIRTY) {
+                saved &= shards.get(i).saveConfig();
+            }
+            shardStates[i] = CLEAN;
+        }
+        return saved;
+    }
+
+    /**
+     * Save the shards that were changed since they were last saved by this ShardedPluginFile
+     * with {@link PluginFile#saveConfigAsync()}, so that they are written in parallel
+     */
+    public void saveConfigAsync() {
+        for (int i = 0; i < shards.size(); i++) {
+            if (shardStates[i] != CLEAN) {
+                shards.get(i).saveConfigAsync();
+                shardStates[i] = CLEAN;
+            }
+        }
+    }
+
+    /**
+     * @return the amount of shards that this ShardedPluginFile is split into
+     */
+    public int getShardCount() {
+        return shards.size();
+    }
+
+
+    private int getShardIndex(String path) {
+        if (path == null) {
+            throw new IllegalArgumentException("path cannot be null");
+        }
+        int separatorIndex = path.indexOf(pathSeparator);
+        String key = (separatorIndex >= 0 ? path.substring(0, separatorIndex) : path);
+        return getShardIndex(key, shardStates.length);
+    }
+
+    static int getShardIndex(String key, int shardCount) {
+        return (key.hashCode() & 0x7fffffff) % shardCount;
+    }
+
+    private static String getShardPath(String filePath, int index) {
+        int extensionIndex = filePath.lastIndexOf('.');
+        if (extensionIndex <= Math.max(filePath.lastIndexOf('/'), filePath.lastIndexOf('\\'))) {
+            return filePath + "-" + index;
+        }
+        return filePath.substring(0, extensionIndex) + "-" + index + filePath.substring(extensionIndex);
+    }
+
+    private void moveMisplacedKeys(List<PluginFile> retired) {
+        // the keys of a shard are in the wrong shard if the shard count was changed
+        List<PluginFile> sources = new ArrayList<PluginFile>(shards);
+        sources.addAll(retired);
+        List<ConfigurationSection> configs = new ArrayList<ConfigurationSection>(sources.size());
+        for (PluginFile source : sources) {
+            configs.add(source.getConfig());
+        }
+        List<List<String>> misplaced = copyMisplacedKeys(configs, shards.size());
+
+        int moved = 0;
+        boolean[] targets = new boolean[shards.size()];
+        for (List<String> keys : misplaced) {
+            for (String key : keys) {
+                targets[getShardIndex(key, shards.size())] = true;
+                moved++;
+            }
+        }
+        if (moved > 0) {
+            plugin.getLogger().info("Moving " + moved + " keys to their shards of file: " + filePath);
+        }
+
+        // the keys are only removed from their previous shards once the shards they were copied to are saved,
+        // so that a failed save cannot lose a key
+        boolean saved = true;
+        for (int i = 0; i < targets.length; i++) {
+            if (targets[i] && !shards.get(i).saveConfig()) {
+                shardStates[i] = DIRTY;
+                saved = false;
+            }
+        }
+        if (!saved) {
+            plugin.getLogger().warning("The moved keys of file '" + filePath + "' are kept in their previous shards "
+                    + "because their new shards could not be saved. They will be moved again by the next load");
+            return;
+        }
+
+        for (int i = 0; i < sources.size(); i++) {
+            List<String> keys = misplaced.get(i);
+            ConfigurationSection config = configs.get(i);
+            for (String key : keys) {
+                config.set(key, null);
+            }
+            if (i >= shards.size()) {
+                if (!sources.get(i).delete()) {
+                    plugin.getLogger().warning("Could not delete the retired shard " + sources.get(i).getFile());
+                }
+            } else if (!keys.isEmpty() && !sources.get(i).saveConfig()) {
+                // the copy in the new shard takes precedence when the keys are moved again by the next load
+                shardStates[i] = DIRTY;
+            }
+        }
+    }
+
+    /**
+     * Copy every top-level key of the given shards that belongs in a different shard to that shard. A key that is already in
+     * its shard is not overwritten, because that copy is the one that has been read and written since it was moved.
+     * The copied keys are not removed from their previous shard.
+     * @param shards - The configurations of the shards, followed by the configurations of any retired shards
+     * that are beyond the shard count
+     * @param shardCount - The amount of shards that the keys are split into
+     * @return the misplaced keys of each given shard, in the same order as the given shards
+     */
+    static List<List<String>> copyMisplacedKeys(List<? extends ConfigurationSection> shards, int shardCount) {
+        List<List<String>> misplaced = new ArrayList<List<String>>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            ConfigurationSection source = shards.get(i);
+            List<String> keys = new ArrayList<String>();
+            for (String key : source.getKeys(false)) {
+                int index = getShardIndex(key, shardCount);
+                if (index == i) {
+                    continue;
+                }
+                ConfigurationSection target = shards.get(index);
+                if (!target.isSet(key)) {
+                    Object value = source.get(key);
+                    if (value instanceof ConfigurationSection) {
+                        PluginFile.copySection((ConfigurationSection) value, target.createSection(key));
+                    } else {
+                        target.set(key, value);
+                    }
+                }
+                keys.add(key);
+            }
+            misplaced.add(keys);
+        }
+        return misplaced;
+    }
+
+    private static <T> List<T> invokeAll(List<Callable<T>> tasks) throws PluginFileException {
+        if (tasks.size() == 1) {
+            try {
+                return Collections.singletonList(tasks.get(0).call());
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(tasks.size(), Runtime.getRuntime().availableProcessors()));
+        try {
+            List<T> results = new ArrayList<T>(tasks.size());
+            for (Future<T> future : pool.invokeAll(tasks)) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    }
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PluginFileException("Interrupted while loading shards", e);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,348 @@
+package com.deadmandungeons.deadmanplugin.filedata;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.serialization.ConfigurationSerializable;
+import org.bukkit.configuration.serialization.ConfigurationSerialization;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.Buffer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * A binary sidecar of the parsed configuration tree of a {@link PluginFile}, which is much faster to load than parsing the YAML.<br>
+ * The snapshot is keyed by the length, last modified time, and CRC-32 of the file that it was taken of, and it is only used
+ * if all three match the file that is being loaded. The values are stored as the types that a YAML load would produce,
+ * so loading a snapshot results in the same configuration tree as parsing the file.
+ * <pre>
+ * cache:   'D' 'M' 'S' 'C' version:u8 fileLength:i64 fileLastModified:i64 fileCrc:i64 bodyLength:i32 bodyCrc:i32 body
+ * body:    hasHeader:bool header:string? section
+ * section: (ENTRY key:string value)* END
+ * value:   tag:u8 data
+ * </pre>
+ * Every method must be called while holding the save lock of the PluginFile.
+ * @author Jon
+ */
+final class SnapshotCache {
+
+    private static final int MAGIC = ('D' << 24) | ('M' << 16) | ('S' << 8) | 'C';
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 1 + 8 + 8 + 8 + 4 + 4;
+
+    private static final int END = 0;
+    private static final int ENTRY = 1;
+
+    private static final int NULL = 2;
+    private static final int STRING = 3;
+    private static final int BOOLEAN = 4;
+    private static final int INT = 5;
+    private static final int LONG = 6;
+    private static final int BIG_INTEGER = 7;
+    private static final int DOUBLE = 8;
+    private static final int DATE = 9;
+    private static final int LIST = 10;
+    private static final int MAP = 11;
+    private static final int SECTION = 12;
+
+    private static final BigInteger MIN_LONG = BigInteger.valueOf(Long.MIN_VALUE);
+    private static final BigInteger MAX_LONG = BigInteger.valueOf(Long.MAX_VALUE);
+
+    private final File file;
+    private final File tempFile;
+
+    /**
+     * @param dataFile - The file of the PluginFile that this cache is for
+     */
+    SnapshotCache(File dataFile) {
+        file = new File(dataFile.getParentFile(), dataFile.getName() + ".cache");
+        tempFile = new File(dataFile.getParentFile(), dataFile.getName() + ".cache.tmp");
+    }
+
+    /**
+     * Load the snapshot into the given empty configuration if the snapshot was taken of a file with the given key
+     * @param config - The empty configuration to load the snapshot into
+     * @param fileLength - The length of the file that is being loaded
+     * @param fileLastModified - The last modified time of the file that is being loaded
+     * @param fileCrc - The CRC-32 of the file that is being loaded
+     * @return true if the snapshot was loaded, or false if there is no snapshot of the given file
+     * @throws IOException if the snapshot could not be read or is corrupt, in which case the given configuration may have been
+     * partially loaded and should be discarded
+     */
+    boolean read(FileConfiguration config, long fileLength, long fileLastModified, long fileCrc) throws IOException {
+        if (!file.exists()) {
+            return false;
+        }
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if (bytes.length < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.get() != VERSION) {
+            throw new IOException("Invalid snapshot header");
+        }
+        if (buffer.getLong() != fileLength || buffer.getLong() != fileLastModified || buffer.getLong() != fileCrc) {
+            // the snapshot is of a different version of the file
+            return false;
+        }
+        int bodyLength = buffer.getInt();
+        int bodyCrc = buffer.getInt();
+        if (bodyLength != buffer.remaining()) {
+            throw new IOException("Truncated snapshot");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes, HEADER_SIZE, bodyLength);
+        if ((int) crc.getValue() != bodyCrc) {
+            throw new IOException("Snapshot failed its CRC check");
+        }
+
+        try {
+            if (buffer.get() != 0) {
+                config.options().header(readString(buffer));
+            }
+            readSection(buffer, config);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException | ClassCastException e) {
+            throw new IOException("Corrupt snapshot", e);
+        }
+        return true;
+    }
+
+    /**
+     * Write a snapshot of the given configuration, which is the content of the file with the given key.
+     * The snapshot is written to a temporary file that is renamed over the previous snapshot, but it is not flushed to the storage
+     * device because it can always be taken again.
+     * @param config - The configuration to take a snapshot of
+     * @param fileLength - The length of the file that the configuration was loaded from or saved to
+     * @param fileLastModified - The last modified time of the file that the configuration was loaded from or saved to
+     * @param fileCrc - The CRC-32 of the file that the configuration was loaded from or saved to
+     * @throws IOException if the snapshot could not be written, or if the configuration contains a value that can not
+     * be stored in a snapshot. The previous snapshot is deleted in that case
+     */
+    void write(FileConfiguration config, long fileLength, long fileLastModified, long fileCrc) throws IOException {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(8192);
+            DataOutputStream body = new DataOutputStream(bytes);
+            String header = config.options().header();
+            body.writeBoolean(header != null);
+            if (header != null) {
+                writeString(body, header);
+            }
+            writeSection(body, config.getValues(false));
+            byte[] bodyBytes = bytes.toByteArray();
+
+            CRC32 crc = new CRC32();
+            crc.update(bodyBytes, 0, bodyBytes.length);
+            ByteBuffer cache = ByteBuffer.allocate(HEADER_SIZE + bodyBytes.length);
+            cache.putInt(MAGIC).put((byte) VERSION).putLong(fileLength).putLong(fileLastModified).putLong(fileCrc);
+            cache.putInt(bodyBytes.length).putInt((int) crc.getValue()).put(bodyBytes);
+
+            Files.write(tempFile.toPath(), cache.array());
+            try {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            tempFile.delete();
+            file.delete();
+            throw (e instanceof IOException ? (IOException) e : new IOException(e.getMessage(), e));
+        }
+    }
+
+    /**
+     * Delete the snapshot
+     */
+    void delete() {
+        tempFile.delete();
+        file.delete();
+    }
+
+
+    private static void writeSection(DataOutputStream out, Map<?, ?> values) throws IOException {
+        for (Map.Entry<?, ?> entry : values.entrySet()) {
+            if (entry.getValue() != null) {
+                out.writeByte(ENTRY);
+                writeString(out, entry.getKey().toString());
+                writeValue(out, entry.getValue(), true);
+            }
+        }
+        out.writeByte(END);
+    }
+
+    private static void writeValue(DataOutputStream out, Object value, boolean inSection) throws IOException {
+        // values are normalized to the types that a YAML load would produce for them
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String || value instanceof Character) {
+            out.writeByte(STRING);
+            writeString(out, value.toString());
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            out.writeByte(INT);
+            out.writeInt(((Number) value).intValue());
+        } else if (value instanceof Long) {
+            writeInteger(out, (Long) value);
+        } else if (value instanceof BigInteger) {
+            BigInteger bigInteger = (BigInteger) value;
+            if (bigInteger.compareTo(MIN_LONG) >= 0 && bigInteger.compareTo(MAX_LONG) <= 0) {
+                writeInteger(out, bigInteger.longValue());
+            } else {
+                out.writeByte(BIG_INTEGER);
+                writeString(out, bigInteger.toString());
+            }
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            // a Float is saved as its shortest decimal representation, which is loaded as a Double
+            out.writeByte(DOUBLE);
+            out.writeDouble(Double.parseDouble(value.toString()));
+        } else if (value instanceof Date) {
+            out.writeByte(DATE);
+            out.writeLong(((Date) value).getTime());
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            out.writeByte(LIST);
+            out.writeInt(list.size());
+            for (Object element : list) {
+                writeValue(out, element, false);
+            }
+        } else if (value instanceof ConfigurationSection) {
+            writeMap(out, ((ConfigurationSection) value).getValues(false), inSection);
+        } else if (value instanceof ConfigurationSerializable) {
+            ConfigurationSerializable serializable = (ConfigurationSerializable) value;
+            Map<String, Object> serialized = new LinkedHashMap<String, Object>();
+            serialized.put(ConfigurationSerialization.SERIALIZED_TYPE_KEY, ConfigurationSerialization.getAlias(serializable.getClass()));
+            serialized.putAll(serializable.serialize());
+            writeMap(out, serialized, false);
+        } else if (value instanceof Map) {
+            writeMap(out, (Map<?, ?>) value, inSection);
+        } else {
+            throw new IllegalArgumentException("A value of type " + value.getClass().getName() + " cannot be stored in a snapshot");
+        }
+    }
+
+    private static void writeMap(DataOutputStream out, Map<?, ?> map, boolean inSection) throws IOException {
+        // a Map in a section is loaded as a section unless it is a serialized object
+        if (inSection && !map.containsKey(ConfigurationSerialization.SERIALIZED_TYPE_KEY)) {
+            out.writeByte(SECTION);
+            writeSection(out, map);
+            return;
+        }
+        out.writeByte(MAP);
+        out.writeInt(map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            writeValue(out, entry.getKey(), false);
+            writeValue(out, entry.getValue(), false);
+        }
+    }
+
+    private static void writeInteger(DataOutputStream out, long value) throws IOException {
+        if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+            out.writeByte(INT);
+            out.writeInt((int) value);
+        } else {
+            out.writeByte(LONG);
+            out.writeLong(value);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        // DataOutputStream#writeUTF is limited to 65535 bytes
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void readSection(ByteBuffer buffer, ConfigurationSection section) throws IOException {
+        int marker;
+        while ((marker = buffer.get()) == ENTRY) {
+            String key = readString(buffer);
+            if (buffer.get(buffer.position()) == SECTION) {
+                buffer.get();
+                readSection(buffer, section.createSection(key));
+            } else {
+                section.set(key, readValue(buffer));
+            }
+        }
+        if (marker != END) {
+            throw new IOException("Invalid section marker " + marker);
+        }
+    }
+
+    private static Object readValue(ByteBuffer buffer) throws IOException {
+        int tag = buffer.get();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return readString(buffer);
+            case BOOLEAN:
+                return buffer.get() != 0;
+            case INT:
+                return buffer.getInt();
+            case LONG:
+                return buffer.getLong();
+            case BIG_INTEGER:
+                return new BigInteger(readString(buffer));
+            case DOUBLE:
+                return buffer.getDouble();
+            case DATE:
+                return new Date(buffer.getLong());
+            case LIST:
+                int size = buffer.getInt();
+                List<Object> list = new ArrayList<Object>(Math.min(size, buffer.remaining()));
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(buffer));
+                }
+                return list;
+            case MAP:
+                return readMap(buffer);
+            default:
+                throw new IOException("Invalid value tag " + tag);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object readMap(ByteBuffer buffer) throws IOException {
+        int size = buffer.getInt();
+        Map<Object, Object> map = new LinkedHashMap<Object, Object>();
+        for (int i = 0; i < size; i++) {
+            Object key = readValue(buffer);
+            map.put(key, readValue(buffer));
+        }
+        if (map.containsKey(ConfigurationSerialization.SERIALIZED_TYPE_KEY)) {
+            // this is what the YAML constructor does with a serialized object
+            Object deserialized = ConfigurationSerialization.deserializeObject((Map<String, ?>) (Map<?, ?>) map);
+            if (deserialized == null) {
+                throw new IOException("Could not deserialize " + map.get(ConfigurationSerialization.SERIALIZED_TYPE_KEY));
+            }
+            return deserialized;
+        }
+        return map;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String str = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        ((Buffer) buffer).position(buffer.position() + length);
+        return str;
+    }
+
+}
@@ -0,0 +1,204 @@
+package com.deadmandungeons.deadmanplugin.filedata;
+
+import com.deadmandungeons.deadmanplugin.filedata.DataEntry.DataKey;
+import org.apache.commons.lang.Validate;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An optional, size-capped deduplication pool for the String values of selected keys that are parsed by a {@link DataEntry}.<br>
+ * Values such as world names, usernames and UUIDs are repeated across many entries, so rather than creating a new String
+ * for each parsed value, the pool returns the String that was pooled for an equal value. A pooled value is found by
+ * comparing the region of the entry String that holds the value, so a pool hit does not create any String at all.<br>
+ * The pool is a fixed size table where a newer value replaces an older value in the same slot, so it never grows
+ * beyond its capacity and never holds a value that is not useful anymore for long.
+ * No keys are pooled by default. Keys are pooled with {@link #enable(DataKey...)}, for example:
+ * <pre>
+ * ValuePool.enable(DataEntry.WORLD_KEY, DataEntry.NAME_KEY, DataEntry.UUID_KEY);
+ * </pre>
+ * @author Jon
+ */
+public final class ValuePool {
+
+    private static final int DEFAULT_CAPACITY = 4096;
+    // The approximate size of a String object and its char array excluding the chars themselves
+    private static final int STRING_OVERHEAD = 40;
+    // Since Java 9, a String of only Latin-1 chars is stored with 1 byte per char rather than 2
+    private static final boolean COMPACT_STRINGS = !System.getProperty("java.specification.version", "").startsWith("1.");
+
+    private static volatile String[] pooledKeys = new String[0];
+    private static volatile String[] table = new String[DEFAULT_CAPACITY];
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong bytesSaved = new AtomicLong();
+
+    private ValuePool() {
+    }
+
+    /**
+     * Pool the parsed values of the given keys
+     * @param keys - The keys whose values should be pooled
+     */
+    public static synchronized void enable(DataKey... keys) {
+        Validate.noNullElements(keys, "keys cannot contain null");
+        String[] current = pooledKeys;
+        String[] newKeys = Arrays.copyOf(current, current.length + keys.length);
+        int count = current.length;
+        for (DataKey key : keys) {
+            if (!contains(newKeys, count, key.name())) {
+                newKeys[count++] = key.name();
+            }
+        }
+        pooledKeys = Arrays.copyOf(newKeys, count);
+    }
+
+    /**
+     * Stop pooling the parsed values of the given keys
+     * @param keys - The keys whose values should no longer be pooled
+     */
+    public static synchronized void disable(DataKey... keys) {
+        Validate.noNullElements(keys, "keys cannot contain null");
+        String[] newKeys = pooledKeys.clone();
+        int count = newKeys.length;
+        for (DataKey key : keys) {
+            for (int i = 0; i < count; i++) {
+                if (newKeys[i].equals(key.name())) {
+                    newKeys[i] = newKeys[--count];
+                    break;
+                }
+            }
+        }
+        pooledKeys = Arrays.copyOf(newKeys, count);
+    }
+
+    /**
+     * @param key - The key to check
+     * @return true if the parsed values of the given key are pooled
+     */
+    public static boolean isEnabled(DataKey key) {
+        return isPooled(key.name());
+    }
+
+    /**
+     * Change the amount of values this pool can hold. This clears the pool.
+     * @param capacity - The maximum amount of pooled values, which is rounded up to a power of two
+     * @throws IllegalArgumentException if capacity is less than 1
+     */
+    public static void setCapacity(int capacity) throws IllegalArgumentException {
+        Validate.isTrue(capacity > 0, "capacity must be greater than 0");
+        int size = 1;
+        while (size < capacity && size < (1 << 30)) {
+            size <<= 1;
+        }
+        table = new String[size];
+    }
+
+    /**
+     * @return the maximum amount of values this pool can hold
+     */
+    public static int getCapacity() {
+        return table.length;
+    }
+
+    /**
+     * Remove all of the pooled values, and reset the statistics
+     */
+    public static void clear() {
+        table = new String[table.length];
+        hits.set(0);
+        misses.set(0);
+        bytesSaved.set(0);
+    }
+
+
+    /**
+     * @return the amount of parsed values that were found in the pool
+     */
+    public static long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the amount of parsed values that were not found in the pool
+     */
+    public static long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the ratio of the parsed values that were found in the pool, from 0 to 1
+     */
+    public static double getHitRate() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return (total > 0 ? (double) hits / total : 0);
+    }
+
+    /**
+     * @return an estimate of the amount of bytes that would have been allocated for the values that were found in the pool.
+     * Values of only Latin-1 chars are counted as 1 byte per char on Java 9 and newer, and as 2 bytes per char on older versions.
+     */
+    public static long getBytesSaved() {
+        return bytesSaved.get();
+    }
+
+
+    /**
+     * @param name - The upper-case name of a key
+     * @return true if the values of the key with the given name are pooled
+     */
+    static boolean isPooled(String name) {
+        String[] keys = pooledKeys;
+        return keys.length > 0 && contains(keys, keys.length, name);
+    }
+
+    /**
+     * @param src - The String containing the value
+     * @param start - The index of the first char of the value
+     * @param end - The index after the last char of the value
+     * @return the pooled String equal to the given region of src
+     */
+    static String intern(String src, int start, int end) {
+        int hash = 0;
+        char charBits = 0;
+        for (int i = start; i < end; i++) {
+            char c = src.charAt(i);
+            hash = 31 * hash + c;
+            charBits |= c;
+        }
+        String[] table = ValuePool.table;
+        int index = (hash ^ (hash >>> 16)) & (table.length - 1);
+        String pooled = table[index];
+        int length = end - start;
+        if (pooled != null && pooled.length() == length && pooled.regionMatches(0, src, start, length)) {
+            hits.incrementAndGet();
+            bytesSaved.addAndGet(STRING_OVERHEAD + (COMPACT_STRINGS && charBits <= 0xFF ? length : length * 2));
+            return pooled;
+        }
+        misses.incrementAndGet();
+        String value = (start == 0 && end == src.length() ? src : src.substring(start, end));
+        // a racy write is harmless because Strings are immutable and the pool is only a cache
+        table[index] = value;
+        return value;
+    }
+
+    /**
+     * @param value - The value to pool
+     * @return the pooled String equal to the given value
+     */
+    static String intern(String value) {
+        return intern(value, 0, value.length());
+    }
+
+    private static boolean contains(String[] keys, int count, String name) {
+        for (int i = 0; i < count; i++) {
+            if (keys[i].equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,133 @@
+package com.deadmandungeons.deadmanplugin.filedata;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.deadmandungeons.deadmanplugin.filedata.DataEntry.DURATION_KEY;
+import static com.deadmandungeons.deadmanplugin.filedata.DataEntry.NAME_KEY;
+import static com.deadmandungeons.deadmanplugin.filedata.DataEntry.WORLD_KEY;
+import static com.deadmandungeons.deadmanplugin.filedata.DataEntry.X_KEY;
+import static com.deadmandungeons.deadmanplugin.filedata.DataEntry.YAW_KEY;
+import static com.deadmandungeons.deadmanplugin.filedata.DataEntry.Y_KEY;
+import static com.deadmandungeons.deadmanplugin.filedata.DataEntry.Z_KEY;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Round trips of DataEntries through the {@link BinaryEntryFormat}, and rejection of corrupted data
+ * @author Jon
+ */
+public class BinaryEntryFormatTest {
+
+    private static final String TEXT = "WORLD:Cynelia, X:-491, Y:23, Z:285, ID:68, DATA:4, DURATION:101m, PRICE:30000\n"
+            + "WORLD:Cynelia, X:-491.5, Y:23.0, Z:285.25, YAW:90.0, PITCH:-12.5\n"
+            + "DURATION:6060000, EXPIRE:1476660000000\n"
+            + "\\UUID:069a79f4-44e9-4726-a5be-fca90e38aaf5, NAME:a\\, b\\\\c\\nd\n";
+
+    @Test
+    public void testWriteReadRoundTrip() throws IOException {
+        DataEntry first = new DataEntry();
+        first.setValue(WORLD_KEY, "Cynelia");
+        first.setValue(X_KEY, -491);
+        first.setValue(Y_KEY, 5000000000L);
+        first.setValue(Z_KEY, 285.25);
+        first.setValue(YAW_KEY, 90.5f);
+        first.setValue(NAME_KEY, "a, b\\c\nd");
+        DataEntry second = new DataEntry("WORLD:Cynelia, DURATION:101m, CUSTOM:value");
+        List<DataEntry> entries = Arrays.asList(first, second, new DataEntry());
+
+        List<DataEntry> read = BinaryEntryFormat.read(new ByteArrayInputStream(write(entries)));
+        assertEquals(entries.size(), read.size());
+        for (int i = 0; i < entries.size(); i++) {
+            assertEquals(entries.get(i).toString(), read.get(i).toString());
+        }
+        // numbers are read back as the same type that was written
+        assertEquals(-491, read.get(0).getValue(X_KEY));
+        assertEquals(5000000000L, read.get(0).getValue(Y_KEY));
+        assertEquals(285.25, read.get(0).getValue(Z_KEY));
+        assertEquals(90.5f, read.get(0).getValue(YAW_KEY));
+        assertEquals("a, b\\c\nd", read.get(0).getValue(NAME_KEY));
+        // a repeated String is written once and referenced by the second entry
+        assertEquals("Cynelia", read.get(1).getValue(WORLD_KEY));
+        assertEquals("101m", read.get(1).getValue(DURATION_KEY));
+    }
+
+    @Test
+    public void testTextRoundTrip() throws IOException {
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        BinaryEntryFormat.fromText(new StringReader(TEXT), binary);
+        StringBuilder text = new StringBuilder();
+        BinaryEntryFormat.toText(new ByteArrayInputStream(binary.toByteArray()), text);
+
+        String[] expected = TEXT.split("\n");
+        String[] actual = text.toString().split("\n");
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(new DataEntry(expected[i]).toString(), actual[i]);
+        }
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void testInvalidMagic() throws IOException {
+        BinaryEntryFormat.read(new ByteArrayInputStream(new byte[] {'N', 'O', 'P', 'E', 1, 0, 0}));
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void testHugeKeyCount() throws IOException {
+        // a key count of Integer.MAX_VALUE must be rejected before the key arrays are allocated
+        BinaryEntryFormat.read(new ByteArrayInputStream(header(0xFF, 0xFF, 0xFF, 0xFF, 0x07)));
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void testHugeStringLength() throws IOException {
+        // one key with a name length of Integer.MAX_VALUE
+        BinaryEntryFormat.read(new ByteArrayInputStream(header(1, 0xFF, 0xFF, 0xFF, 0xFF, 0x07)));
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void testCountLongerThanInput() throws IOException {
+        byte[] data = header(100);
+        BinaryEntryFormat.read(new ByteArrayInputStream(data), data.length);
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void testInvalidKeyIndex() throws IOException {
+        // one key, one entry with one pair that refers to the second key
+        byte[] data = header(1, 1, 'X', 1, 1, 1);
+        BinaryEntryFormat.read(new ByteArrayInputStream(data));
+    }
+
+    @Test(expected = EOFException.class)
+    public void testTruncated() throws IOException {
+        byte[] data = write(Arrays.asList(new DataEntry("WORLD:Cynelia, X:-491, NAME:notch")));
+        BinaryEntryFormat.read(new ByteArrayInputStream(Arrays.copyOf(data, data.length - 3)));
+    }
+
+
+    private static byte[] write(List<DataEntry> entries) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryEntryFormat.write(entries, out);
+        return out.toByteArray();
+    }
+
+    private static byte[] header(int... bytes) {
+        byte[] data = new byte[5 + bytes.length];
+        data[0] = 'D';
+        data[1] = 'M';
+        data[2] = 'D';
+        data[3] = 'E';
+        data[4] = 1;
+        for (int i = 0; i < bytes.length; i++) {
+            data[5 + i] = (byte) bytes[i];
+        }
+        return data;
+    }
+
+}
@@ -0,0 +1,100 @@
+package com.deadmandungeons.deadmanplugin.filedata;
+
+import org.junit.Test;
+
+import static com.deadmandungeons.deadmanplugin.filedata.DataEntry.NAME_KEY;
+import static com.deadmandungeons.deadmanplugin.filedata.DataEntry.X_KEY;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Round trips of values with the characters that are escaped by {@link DataEntry#toString()}
+ * @author Jon
+ */
+public class DataEntryEscapeTest {
+
+    private static final String[] VALUES = {
+            "a,b", ",", "a,,b", "back\\slash", "\\", "trailing\\", "line\nfeed", "carriage\rreturn", "\r\n", "all ,\\\n\r mixed"
+    };
+
+    @Test
+    public void testEscapedValuesRoundTrip() {
+        for (String value : VALUES) {
+            DataEntry entry = new DataEntry();
+            entry.setValue(NAME_KEY, value);
+            entry.setValue(X_KEY, 1);
+            String entryStr = entry.toString();
+
+            DataEntry parsed = new DataEntry(entryStr);
+            assertEquals(entryStr, value, parsed.getValue(NAME_KEY));
+            assertEquals(entryStr, 1, parsed.getInt(X_KEY));
+            assertEquals(entryStr, value, DataEntry.lazy(entryStr).getValue(NAME_KEY));
+            assertEquals(entryStr, parsed.toString());
+        }
+    }
+
+    @Test
+    public void testFormatEscapes() {
+        DataEntry entry = new DataEntry();
+        entry.setValue(NAME_KEY, "a,b\\c\nd\re");
+        assertEquals("\\NAME:a\\,b\\\\c\\nd\\re", entry.toString());
+    }
+
+    @Test
+    public void testEntryWithoutEscapesHasNoMarker() {
+        DataEntry entry = new DataEntry();
+        entry.setValue(NAME_KEY, "notch");
+        entry.setValue(X_KEY, 1);
+        assertEquals("X:1, NAME:notch", entry.toString());
+    }
+
+    @Test
+    public void testEscapedCommaDoesNotEndValue() {
+        DataEntry entry = new DataEntry("\\NAME:a\\, b, X:5");
+        assertEquals("a, b", entry.getValue(NAME_KEY));
+        assertEquals(5, entry.getInt(X_KEY));
+    }
+
+    @Test
+    public void testUnknownEscapeIsKept() {
+        assertEquals("C:\\d", new DataEntry("\\NAME:C:\\d").getValue(NAME_KEY));
+    }
+
+    @Test
+    public void testLegacyBackslashesAreRaw() {
+        // entries written before values were escaped have no leading marker, so a backslash is just a backslash
+        for (String value : new String[] {"C:\\new", "\\\\srv\\share", "C:\\r\\n"}) {
+            String entryStr = "NAME:" + value + ", X:1";
+            assertEquals(entryStr, value, new DataEntry(entryStr).getValue(NAME_KEY));
+            assertEquals(entryStr, value, DataEntry.lazy(entryStr).getValue(NAME_KEY));
+            assertEquals(entryStr, 1, new DataEntry(entryStr).getInt(X_KEY));
+        }
+    }
+
+    @Test
+    public void testLegacyTrailingBackslashEndsValue() {
+        DataEntry entry = new DataEntry("NAME:foo\\, X:1");
+        assertEquals("foo\\", entry.getValue(NAME_KEY));
+        assertEquals(1, entry.getInt(X_KEY));
+    }
+
+    @Test
+    public void testLegacyValueIsRewrittenEscaped() {
+        DataEntry entry = new DataEntry("NAME:C:\\new, X:1");
+        String entryStr = entry.toString();
+        assertEquals("\\X:1, NAME:C:\\\\new", entryStr);
+        assertEquals("C:\\new", new DataEntry(entryStr).getValue(NAME_KEY));
+    }
+
+    @Test
+    public void testLegacyParserReadsEscapedValues() {
+        String[] entryStrs = {"\\NAME:a\\, b, X:5", "\\NAME:C:\\\\new\\\\, X:5", "NAME:C:\\new, X:5", "NAME:foo\\, X:5"};
+        for (String entryStr : entryStrs) {
+            DataSlots slots = new DataSlots();
+            DataEntry.parseLegacy(entryStr, slots);
+            DataEntry entry = new DataEntry(entryStr);
+            assertEquals(entryStr, entry.getValue(NAME_KEY), slots.get(NAME_KEY));
+            assertEquals(entryStr, entry.getValue(X_KEY), slots.get(X_KEY));
+        }
+    }
+
+}
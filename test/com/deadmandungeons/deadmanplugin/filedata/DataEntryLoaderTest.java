@@ -0,0 +1,81 @@
+package com.deadmandungeons.deadmanplugin.filedata;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static com.deadmandungeons.deadmanplugin.filedata.DataEntry.NAME_KEY;
+import static com.deadmandungeons.deadmanplugin.filedata.DataEntry.X_KEY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Bulk loading of raw DataEntry Strings with a {@link DataEntryLoader}, and the reporting of invalid raw entries
+ * @author Jon
+ */
+public class DataEntryLoaderTest {
+
+    @Test
+    public void testInvalidEntriesAreReported() {
+        List<Object> rawEntries = Arrays.<Object>asList("X:1, NAME:notch", "", "garbage", "X:2, NAME:", "X:3, junk", null, 4, "\\NAME:a\\, b");
+        RecordingCallback callback = new RecordingCallback();
+        List<DataEntry> loaded = DataEntryLoader.load(rawEntries, callback);
+
+        assertEquals(Arrays.asList(0, 3, 7), callback.loaded);
+        assertEquals(Arrays.asList(1, 2, 4, 5, 6), callback.invalid);
+        assertEquals(3, loaded.size());
+        assertEquals("notch", loaded.get(0).getValue(NAME_KEY));
+        assertEquals(2, loaded.get(1).getInt(X_KEY));
+        assertEquals("a, b", loaded.get(2).getValue(NAME_KEY));
+
+        // a String that failed to be decoded has a cause, and any other raw entry does not
+        assertNotNull(callback.causes.get(0));
+        assertNotNull(callback.causes.get(2));
+        assertNull(callback.causes.get(3));
+    }
+
+    @Test
+    public void testParallelLoadKeepsOrder() {
+        List<String> rawEntries = new ArrayList<String>();
+        for (int i = 0; i < 5000; i++) {
+            rawEntries.add(i % 1000 == 0 ? "invalid" : "X:" + i);
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            RecordingCallback callback = new RecordingCallback();
+            List<DataEntry> loaded = DataEntryLoader.load(rawEntries, callback, pool);
+            assertEquals(4995, loaded.size());
+            assertEquals(5, callback.invalid.size());
+            for (int i = 0; i < loaded.size(); i++) {
+                assertEquals((int) callback.loaded.get(i), loaded.get(i).getInt(X_KEY));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+
+    private static class RecordingCallback implements DataEntryLoader.Callback {
+
+        private final List<Integer> loaded = new ArrayList<Integer>();
+        private final List<Integer> invalid = new ArrayList<Integer>();
+        private final List<Exception> causes = new ArrayList<Exception>();
+
+        @Override
+        public boolean onLoad(int index, DataEntry entry) {
+            loaded.add(index);
+            return true;
+        }
+
+        @Override
+        public void onInvalid(int index, Object rawEntry, Exception cause) {
+            invalid.add(index);
+            causes.add(cause);
+        }
+    }
+
+}
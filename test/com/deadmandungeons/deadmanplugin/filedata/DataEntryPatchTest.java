@@ -0,0 +1,125 @@
+package com.deadmandungeons.deadmanplugin.filedata;
+
+import com.deadmandungeons.deadmanplugin.filedata.DataEntry.Patch;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+
+import static com.deadmandungeons.deadmanplugin.filedata.DataEntry.DURATION_KEY;
+import static com.deadmandungeons.deadmanplugin.filedata.DataEntry.NAME_KEY;
+import static com.deadmandungeons.deadmanplugin.filedata.DataEntry.WORLD_KEY;
+import static com.deadmandungeons.deadmanplugin.filedata.DataEntry.X_KEY;
+import static com.deadmandungeons.deadmanplugin.filedata.DataEntry.Y_KEY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Dirty tracking of DataEntry values, and diffing and applying {@link Patch}es
+ * @author Jon
+ */
+public class DataEntryPatchTest {
+
+    @Test
+    public void testDiffApply() {
+        DataEntry from = new DataEntry("WORLD:Cynelia, X:1, NAME:notch, CUSTOM:removed");
+        DataEntry to = new DataEntry("WORLD:Nether, X:1, Y:2, OTHER:added");
+
+        Patch patch = from.diff(to);
+        assertEquals(5, patch.size());
+        assertEquals(new LinkedHashSet<String>(Arrays.asList("NAME", "CUSTOM")), patch.getRemovedKeys());
+
+        DataEntry patched = from.clone();
+        patched.applyPatch(patch);
+        assertTrue(patched.diff(to).isEmpty());
+        assertTrue(to.diff(patched).isEmpty());
+        assertEquals("Nether", patched.getValue(WORLD_KEY));
+        assertEquals(2, patched.getInt(Y_KEY));
+    }
+
+    @Test
+    public void testDiffOfEqualEntries() {
+        DataEntry entry = new DataEntry("WORLD:Cynelia, X:1, DURATION:101m, CUSTOM:value");
+        assertTrue(entry.diff(entry.clone()).isEmpty());
+        assertTrue(entry.diff(new DataEntry(entry.toString())).isEmpty());
+    }
+
+    @Test
+    public void testChangesBringCopyUpToDate() {
+        DataEntry entry = new DataEntry("WORLD:Cynelia, X:1, Y:2, NAME:notch");
+        DataEntry copy = entry.clone();
+        entry.clearDirty();
+
+        entry.setValue(X_KEY, 5);
+        entry.setValue(NAME_KEY, null);
+        entry.setValue(DURATION_KEY, "101m");
+        assertEquals(3, entry.getDirtyKeys().size());
+
+        Patch changes = entry.getChanges();
+        assertEquals(Collections.singleton("NAME"), changes.getRemovedKeys());
+        copy.applyPatch(changes);
+        assertTrue(copy.diff(entry).isEmpty());
+    }
+
+    @Test
+    public void testSettingSameValueIsNotDirty() {
+        DataEntry entry = new DataEntry();
+        entry.setValue(X_KEY, 5);
+        entry.setValue(Y_KEY, 2.5);
+        entry.setValue(NAME_KEY, "notch");
+        entry.clearDirty();
+
+        entry.setValue(X_KEY, 5);
+        entry.setValue(Y_KEY, 2.5);
+        entry.setValue(NAME_KEY, "notch");
+        entry.setValue(WORLD_KEY, null);
+        assertFalse(entry.isDirty());
+        assertTrue(entry.getChanges().isEmpty());
+    }
+
+    @Test
+    public void testSettingDifferentValueIsDirty() {
+        DataEntry entry = new DataEntry();
+        entry.setValue(X_KEY, 5);
+        entry.setValue(Y_KEY, 0.0);
+        entry.clearDirty();
+
+        entry.setValue(X_KEY, 6);
+        entry.setValue(Y_KEY, -0.0);
+        assertTrue(entry.isDirty(X_KEY));
+        assertTrue(entry.isDirty(Y_KEY));
+    }
+
+    @Test
+    public void testSettingValueOfAnotherTypeIsDirty() {
+        // a number and the String it was parsed from are not considered the same
+        DataEntry entry = new DataEntry("X:5, Y:5");
+        entry.clearDirty();
+
+        entry.setValue(X_KEY, 5);
+        entry.setValue(Y_KEY, 5L);
+        assertTrue(entry.isDirty(X_KEY));
+        assertTrue(entry.isDirty(Y_KEY));
+
+        entry.clearDirty();
+        entry.setValue(Y_KEY, 5);
+        assertTrue(entry.isDirty(Y_KEY));
+    }
+
+    @Test
+    public void testPatchOfValues() {
+        DataEntry values = new DataEntry("WORLD:Cynelia, X:1");
+        Patch patch = new Patch(values, Collections.singleton(NAME_KEY));
+        assertEquals(3, patch.size());
+
+        DataEntry entry = new DataEntry("WORLD:Nether, X:2, NAME:notch, DURATION:101m");
+        entry.applyPatch(patch);
+        assertTrue(entry.diff(new DataEntry("WORLD:Cynelia, X:1, DURATION:101m")).isEmpty());
+        assertTrue(entry.isDirty(WORLD_KEY));
+        assertTrue(entry.isDirty(NAME_KEY));
+        assertFalse(entry.isDirty(DURATION_KEY));
+    }
+
+}
@@ -0,0 +1,172 @@
+package com.deadmandungeons.deadmanplugin.filedata;
+
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Replaying the records of a {@link Journal}, including a journal with an incomplete or corrupted last record
+ * as left behind by a crash in the middle of an append
+ * @author Jon
+ */
+public class JournalTest {
+
+    private static final long SNAPSHOT_CRC = 0x12345678L;
+
+    private File directory;
+    private File dataFile;
+    private File journalFile;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("journal-test").toFile();
+        dataFile = new File(directory, "data.yml");
+        journalFile = new File(directory, "data.yml.journal");
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testReplay() throws IOException {
+        Journal journal = new Journal(dataFile);
+        journal.recover(new YamlConfiguration(), SNAPSHOT_CRC);
+        journal.record("a.b", "value");
+        journal.record("count", 5);
+        journal.record("list", Arrays.asList("x", "y"));
+        journal.record("removed", null);
+        journal.append();
+        assertFalse(journal.hasPending());
+        assertFalse(journal.isEmpty());
+
+        YamlConfiguration config = new YamlConfiguration();
+        config.set("removed", "old");
+        config.set("kept", "kept");
+        assertEquals(4, new Journal(dataFile).recover(config, SNAPSHOT_CRC));
+        assertEquals("value", config.getString("a.b"));
+        assertEquals(5, config.get("count"));
+        assertEquals(Arrays.asList("x", "y"), config.getList("list"));
+        assertNull(config.get("removed"));
+        assertEquals("kept", config.getString("kept"));
+    }
+
+    @Test
+    public void testLaterRecordWins() throws IOException {
+        Journal journal = new Journal(dataFile);
+        journal.record("key", "first");
+        journal.append();
+        journal.record("key", "second");
+        journal.append();
+
+        YamlConfiguration config = new YamlConfiguration();
+        assertEquals(2, new Journal(dataFile).recover(config, SNAPSHOT_CRC));
+        assertEquals("second", config.getString("key"));
+    }
+
+    @Test
+    public void testTruncatedTail() throws IOException {
+        writeTwoRecords();
+        try (RandomAccessFile file = new RandomAccessFile(journalFile, "rw")) {
+            file.setLength(file.length() - 3);
+        }
+
+        YamlConfiguration config = new YamlConfiguration();
+        assertEquals(1, new Journal(dataFile).recover(config, SNAPSHOT_CRC));
+        assertEquals("first", config.getString("first"));
+        assertNull(config.get("second"));
+    }
+
+    @Test
+    public void testBadCrcTail() throws IOException {
+        writeTwoRecords();
+        try (RandomAccessFile file = new RandomAccessFile(journalFile, "rw")) {
+            file.seek(file.length() - 1);
+            int last = file.read();
+            file.seek(file.length() - 1);
+            file.write(last ^ 0xFF);
+        }
+
+        YamlConfiguration config = new YamlConfiguration();
+        assertEquals(1, new Journal(dataFile).recover(config, SNAPSHOT_CRC));
+        assertEquals("first", config.getString("first"));
+        assertNull(config.get("second"));
+    }
+
+    @Test
+    public void testAppendAfterCorruptTailDropsIt() throws IOException {
+        writeTwoRecords();
+        try (RandomAccessFile file = new RandomAccessFile(journalFile, "rw")) {
+            file.setLength(file.length() - 3);
+        }
+        Journal journal = new Journal(dataFile);
+        journal.recover(new YamlConfiguration(), SNAPSHOT_CRC);
+        journal.record("third", "third");
+        journal.append();
+
+        // the new record is not hidden behind the partial record that was left by the crash
+        YamlConfiguration config = new YamlConfiguration();
+        assertEquals(2, new Journal(dataFile).recover(config, SNAPSHOT_CRC));
+        assertEquals("first", config.getString("first"));
+        assertEquals("third", config.getString("third"));
+    }
+
+    @Test
+    public void testInvalidHeader() throws IOException {
+        writeTwoRecords();
+        try (RandomAccessFile file = new RandomAccessFile(journalFile, "rw")) {
+            file.write('X');
+        }
+
+        YamlConfiguration config = new YamlConfiguration();
+        assertEquals(0, new Journal(dataFile).recover(config, SNAPSHOT_CRC));
+        assertTrue(config.getKeys(false).isEmpty());
+    }
+
+    @Test
+    public void testRebase() throws IOException {
+        Journal journal = new Journal(dataFile);
+        journal.record("first", "first");
+        journal.append();
+        long mark = journal.mark();
+        journal.record("second", "second");
+        journal.append();
+
+        // the snapshot includes the first value, so only the second record is kept
+        journal.prepareRebase(SNAPSHOT_CRC, mark);
+        journal.commitRebase();
+        YamlConfiguration config = new YamlConfiguration();
+        assertEquals(1, new Journal(dataFile).recover(config, SNAPSHOT_CRC));
+        assertNull(config.get("first"));
+        assertEquals("second", config.getString("second"));
+    }
+
+
+    private void writeTwoRecords() throws IOException {
+        Journal journal = new Journal(dataFile);
+        journal.record("first", "first");
+        journal.append();
+        journal.record("second", "second");
+        journal.append();
+    }
+
+}
@@ -0,0 +1,112 @@
+package com.deadmandungeons.deadmanplugin.filedata;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Moving the keys of a {@link ShardedPluginFile} to their new shard when the shard count grows or shrinks
+ * @author Jon
+ */
+public class ShardRehashTest {
+
+    private static final int KEY_COUNT = 200;
+
+    @Test
+    public void testGrow() {
+        List<YamlConfiguration> shards = createShards(2, 5);
+        rehash(shards, 5);
+        assertPlaced(shards, 5);
+    }
+
+    @Test
+    public void testShrink() {
+        // the shards beyond the new count are retired shards whose keys all need to be moved
+        List<YamlConfiguration> shards = createShards(5, 5);
+        rehash(shards, 2);
+        for (int i = 2; i < shards.size(); i++) {
+            assertTrue(shards.get(i).getKeys(false).isEmpty());
+        }
+        assertPlaced(shards.subList(0, 2), 2);
+    }
+
+    @Test
+    public void testUnchangedCount() {
+        List<YamlConfiguration> shards = createShards(3, 3);
+        List<List<String>> misplaced = ShardedPluginFile.copyMisplacedKeys(shards, 3);
+        for (List<String> keys : misplaced) {
+            assertTrue(keys.isEmpty());
+        }
+        assertPlaced(shards, 3);
+    }
+
+    @Test
+    public void testPlacedKeyIsNotOverwritten() {
+        List<YamlConfiguration> shards = createShards(1, 2);
+        String key = findKey(1, 2);
+        // the key was already moved and then changed, but a crash kept the stale copy in its previous shard
+        shards.get(0).set(key + ".value", "stale");
+        shards.get(1).set(key + ".value", "changed");
+
+        List<List<String>> misplaced = ShardedPluginFile.copyMisplacedKeys(shards, 2);
+        assertTrue(misplaced.get(0).contains(key));
+        assertEquals("changed", shards.get(1).getString(key + ".value"));
+    }
+
+
+    private static List<YamlConfiguration> createShards(int shardCount, int totalCount) {
+        List<YamlConfiguration> shards = new ArrayList<YamlConfiguration>();
+        for (int i = 0; i < totalCount; i++) {
+            shards.add(new YamlConfiguration());
+        }
+        for (int i = 0; i < KEY_COUNT; i++) {
+            String key = "key" + i;
+            ConfigurationSection section = shards.get(ShardedPluginFile.getShardIndex(key, shardCount)).createSection(key);
+            section.set("value", "value" + i);
+            section.set("nested.number", i);
+        }
+        return shards;
+    }
+
+    private static void rehash(List<YamlConfiguration> shards, int shardCount) {
+        List<List<String>> misplaced = ShardedPluginFile.copyMisplacedKeys(shards, shardCount);
+        for (int i = 0; i < shards.size(); i++) {
+            for (String key : misplaced.get(i)) {
+                shards.get(i).set(key, null);
+            }
+        }
+    }
+
+    private static void assertPlaced(List<YamlConfiguration> shards, int shardCount) {
+        int count = 0;
+        for (int i = 0; i < shards.size(); i++) {
+            for (String key : shards.get(i).getKeys(false)) {
+                assertEquals(key, ShardedPluginFile.getShardIndex(key, shardCount), i);
+                count++;
+            }
+        }
+        assertEquals(KEY_COUNT, count);
+        for (int i = 0; i < KEY_COUNT; i++) {
+            String key = "key" + i;
+            ConfigurationSection shard = shards.get(ShardedPluginFile.getShardIndex(key, shardCount));
+            assertEquals("value" + i, shard.getString(key + ".value"));
+            assertEquals(i, shard.get(key + ".nested.number"));
+        }
+    }
+
+    private static String findKey(int shardIndex, int shardCount) {
+        for (int i = 0; ; i++) {
+            String key = "moved" + i;
+            if (ShardedPluginFile.getShardIndex(key, shardCount) == shardIndex) {
+                return key;
+            }
+        }
+    }
+
+}